@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+/**
+* Aho-Corasick automaton built from the dictionary trie
+* Each state is a prefix of some (possibly symbol substituted) dictionary word and the transition table is
+* completed with failure links, so feeding a password through it one character at a time tells whether any
+* substring of the password so far is a dictionary word at the cost of a single array lookup per character
+* Characters are given as their index in the password policy's alphabet
+* @author Jake Halloran
+* @version 1.0
+**/
+public class DictionaryAutomaton{
+	private final int alphabetSize; //number of characters a password can be built from
+	private final PasswordPolicy policy; //policy whose alphabet indexes the transitions
+	private int next[]; //transition table, next[state*alphabetSize+index] is the state after reading a character
+	private boolean wordEnd[]; //true if a dictionary word ends at the state or at one of its suffixes
+	private int numStates; //number of states in use
+
+	/**
+	* Builds the automaton from the root of a dictionary trie whose words end in the '^' flag
+	* The trie already holds every symbol substituted spelling, so those are matched as well
+	* @param dictionary the dictionary trie
+	* @param policy password policy giving the alphabet
+	**/
+	public DictionaryAutomaton(DlbTrie dictionary, PasswordPolicy policy){
+		this.policy = policy;
+		alphabetSize = policy.alphabetSize();
+		next = new int[1024*alphabetSize];
+		wordEnd = new boolean[1024];
+		numStates = 0;
+		newState(); //root state
+
+		addWords(dictionary,DlbTrie.ROOT,0);
+		addFailureLinks();
+	}
+
+	/**
+	* Copies the trie below a node into the goto function of the automaton
+	* Subtrees starting with a character outside of the alphabet can never match a password and are skipped
+	* @param dictionary the dictionary trie
+	* @param node index of the trie node matching state
+	* @param state the automaton state for the node
+	**/
+	private void addWords(DlbTrie dictionary, int node, int state){
+		for(int child=dictionary.getFirstChild(node);child!=DlbTrie.NONE;child=dictionary.getNextSibling(child)){
+			char c = dictionary.getKey(child);
+			if(c=='^'){
+				wordEnd[state] = true;
+				continue;
+			}
+			int index = policy.indexOf(c);
+			if(index<0){
+				continue;
+			}
+			int slot = state*alphabetSize+index;
+			if(next[slot]<0){
+				int created = newState(); //may grow the table, so assign after
+				next[slot] = created;
+			}
+			addWords(dictionary,child,next[slot]);
+		}
+	}
+
+	/**
+	* Fills in every missing transition by following failure links in breadth first order
+	* and marks states whose longest proper suffix state is a word end
+	**/
+	private void addFailureLinks(){
+		int fail[] = new int[numStates];
+		int queue[] = new int[numStates];
+		int head = 0, tail = 0;
+
+		//Children of the root fail back to the root, missing root transitions loop on the root
+		for(int c=0;c<alphabetSize;c++){
+			int child = next[c];
+			if(child<0){
+				next[c] = 0;
+			}
+			else{
+				fail[child] = 0;
+				queue[tail++] = child;
+			}
+		}
+
+		while(head<tail){
+			int state = queue[head++];
+			wordEnd[state] |= wordEnd[fail[state]];
+			for(int c=0;c<alphabetSize;c++){
+				int slot = state*alphabetSize+c;
+				int child = next[slot];
+				int fallback = next[fail[state]*alphabetSize+c];
+				if(child<0){
+					next[slot] = fallback;
+				}
+				else{
+					fail[child] = fallback;
+					queue[tail++] = child;
+				}
+			}
+		}
+	}
+
+	/**
+	* Allocates a new state with no transitions, growing the tables when they are full
+	* @return the new state
+	**/
+	private int newState(){
+		if(numStates==wordEnd.length){
+			wordEnd = Arrays.copyOf(wordEnd,wordEnd.length*2);
+			next = Arrays.copyOf(next,wordEnd.length*alphabetSize);
+		}
+		Arrays.fill(next,numStates*alphabetSize,(numStates+1)*alphabetSize,-1);
+		return numStates++;
+	}
+
+	/**
+	* Returns the start state, before any character has been read
+	* @return the start state
+	**/
+	public int start(){
+		return 0;
+	}
+
+	/**
+	* Moves the automaton by one character
+	* @param state the current state
+	* @param index alphabet index of the character read
+	* @return the state after reading the character
+	**/
+	public int next(int state, int index){
+		return next[state*alphabetSize+index];
+	}
+
+	/**
+	* Tells whether reading into a state completed a dictionary word
+	* @param state the state to check
+	* @return true if some suffix of the characters read so far is a dictionary word
+	**/
+	public boolean isWordEnd(int state){
+		return wordEnd[state];
+	}
+
+	/**
+	* Validates a slice of a password, telling whether any dictionary word appears inside it
+	* Runs the slice through the automaton in a loop over the offsets, so no substrings, builders or
+	* recursion are needed; a character outside the alphabet restarts the automaton since no word holds it
+	* @param pass the password or portion of a password being validated
+	* @param start index of the first character of the slice
+	* @param end index one past the last character of the slice
+	* @return true if some dictionary word appears in the slice
+	**/
+	public boolean holdsWord(CharSequence pass, int start, int end){
+		int state = start();
+		for(int i=start;i<end;i++){
+			int index = policy.indexOf(pass.charAt(i));
+			if(index<0){
+				state = start();
+				continue;
+			}
+			state = next(state,index);
+			if(wordEnd[state]){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	* Returns the number of states in the automaton
+	* @return the state count
+	**/
+	public int size(){
+		return numStates;
+	}
+}
@@ -0,0 +1,302 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+* Streams a word list into a dictionary trie in bounded memory
+* Words go through four stages: each line is read and normalized (lower cased, too long or unstorable words
+* dropped), expanded into every symbol substituted spelling, collected into sorted duplicate free runs that
+* are spilled to temporary files whenever the run buffer fills, and finally merged back into one sorted
+* stream that the DlbTrie bulk build constructor turns into the trie in a single pass
+* Only one run of words is ever held in memory, so word lists far larger than the heap can be loaded
+* @author Jake Halloran
+* @version 1.0
+**/
+public class DictionaryPipeline{
+	private final int maxLength; //longest word kept, longer ones can never fit in a password
+	private final String runs[]; //words of the run being collected
+	private int runCount; //number of words in the current run
+	private File spilled[]; //sorted runs written to temporary files
+	private int numSpilled; //number of spilled runs
+
+	/**
+	* Creates a pipeline
+	* @param policy password policy giving the longest password
+	* @param runSize most words held in memory at once, a larger run means fewer temporary files
+	**/
+	public DictionaryPipeline(PasswordPolicy policy, int runSize){
+		maxLength = policy.getMaxLength();
+		runs = new String[Math.max(runSize,1)];
+		spilled = new File[8];
+	}
+
+	/**
+	* Reads a word list into a new trie holding every normalized word and its substituted spellings once each
+	* @param fileName the word list, one word per line
+	* @param my_dictionary the output file writer for printing the trie, may be null if it is never printed
+	* @return the trie, with every word ending in the '^' end of word flag
+	* @throws IOException if the word list or a temporary run file cannot be read or written
+	**/
+	public DlbTrie build(String fileName, PrintWriter my_dictionary) throws IOException{
+		runCount = numSpilled = 0;
+		try{
+			BufferedReader lines = new BufferedReader(new FileReader(fileName),1<<16);
+			try{
+				String line;
+				while((line = lines.readLine())!=null){
+					String word = normalize(line);
+					if(word!=null){
+						expand(word.toCharArray(),0);
+					}
+				}
+			}
+			finally{
+				lines.close();
+			}
+
+			//A word list that fit in one run never touches the disk
+			if(numSpilled==0){
+				int unique = sortRun();
+				return new DlbTrie(my_dictionary,Arrays.asList(runs).subList(0,unique).iterator(),'^');
+			}
+			if(runCount>0){
+				spill();
+			}
+			Merge merge = new Merge();
+			try{
+				return new DlbTrie(my_dictionary,merge,'^');
+			}
+			catch(UncheckedIOException e){
+				throw e.getCause();
+			}
+			finally{
+				merge.close();
+			}
+		}
+		finally{
+			for(int i=0;i<numSpilled;i++){
+				spilled[i].delete();
+			}
+			Arrays.fill(runs,null);
+		}
+	}
+
+	/**
+	* Normalizes a line of the word list
+	* @param line the line as read
+	* @return the lower cased word, or null if it is empty, longer than any password, or holds the '^' end of word flag
+	**/
+	private String normalize(String line){
+		if(line.length()==0||line.length()>maxLength||line.indexOf('^')>=0){
+			return null;
+		}
+		return line.toLowerCase();
+	}
+
+	/**
+	* Adds every spelling of a word to the current run, each substitutable character either kept or replaced
+	* by its symbol, the same spellings DlbTrie.add builds with the sub flag plus the substituted first character
+	* @param word the characters of the word, restored before returning
+	* @param i the first position not yet expanded
+	* @throws IOException if a full run cannot be spilled
+	**/
+	private void expand(char word[], int i) throws IOException{
+		for(;i<word.length;i++){
+			char sub = DlbTrie.substitute(word[i]);
+			if(sub!=word[i]){
+				char c = word[i];
+				expand(word,i+1);
+				word[i] = sub;
+				expand(word,i+1);
+				word[i] = c;
+				return;
+			}
+		}
+		if(runCount==runs.length){
+			spill();
+		}
+		runs[runCount++] = new String(word);
+	}
+
+	/**
+	* Sorts the current run and removes its duplicates
+	* @return the number of distinct words, which are left at the front of the run
+	**/
+	private int sortRun(){
+		Arrays.sort(runs,0,runCount);
+		int unique = 0;
+		for(int i=0;i<runCount;i++){
+			if(unique==0||!runs[i].equals(runs[unique-1])){
+				runs[unique++] = runs[i];
+			}
+		}
+		return unique;
+	}
+
+	/**
+	* Writes the current run to a temporary file as sorted distinct lines and empties it
+	* @throws IOException if the file cannot be written
+	**/
+	private void spill() throws IOException{
+		int unique = sortRun();
+		File file = File.createTempFile("dictionary",".run");
+		file.deleteOnExit();
+		if(numSpilled==spilled.length){
+			spilled = Arrays.copyOf(spilled,numSpilled*2);
+		}
+		spilled[numSpilled++] = file;
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),"UTF-8"),1<<16);
+		try{
+			for(int i=0;i<unique;i++){
+				out.write(runs[i]);
+				out.write('\n');
+			}
+		}
+		finally{
+			out.close();
+		}
+		Arrays.fill(runs,0,runCount,null);
+		runCount = 0;
+	}
+
+	/**
+	* Sorted stream of the distinct words of every spilled run, reading one word per run at a time
+	* Read errors are thrown unchecked since the trie constructor reading the stream cannot throw them
+	**/
+	private class Merge implements Iterator<String>{
+		private final PriorityQueue<Run> heads; //every run that is not used up, smallest current word first
+
+		/**
+		* Opens every spilled run, closing the ones already opened if a later one fails so their files can be deleted
+		* @throws IOException if a run cannot be read
+		**/
+		Merge() throws IOException{
+			heads = new PriorityQueue<Run>(numSpilled);
+			try{
+				for(int i=0;i<numSpilled;i++){
+					Run run = new Run(spilled[i]);
+					boolean more = false;
+					try{
+						more = run.next();
+					}
+					finally{
+						if(more){
+							heads.add(run);
+						}
+						else{
+							run.close();
+						}
+					}
+				}
+			}
+			catch(IOException e){
+				for(Run run : heads){
+					try{
+						run.close();
+					}
+					catch(IOException suppressed){
+						e.addSuppressed(suppressed);
+					}
+				}
+				throw e;
+			}
+		}
+
+		/**
+		* Tells whether any run has a word left
+		* @return true if there is another word
+		**/
+		public boolean hasNext(){
+			return !heads.isEmpty();
+		}
+
+		/**
+		* Returns the smallest word left in any run, moving every run holding it past it
+		* @return the next word
+		**/
+		public String next(){
+			if(heads.isEmpty()){
+				throw new NoSuchElementException();
+			}
+			try{
+				String word = heads.peek().head;
+				while(!heads.isEmpty()&&heads.peek().head.equals(word)){
+					Run run = heads.poll();
+					if(run.next()){
+						heads.add(run);
+					}
+					else{
+						run.close();
+					}
+				}
+				return word;
+			}
+			catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		* Words cannot be removed from a run
+		**/
+		public void remove(){
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		* Closes every run that is still open
+		* @throws IOException if a run cannot be closed
+		**/
+		void close() throws IOException{
+			for(Run run : heads){
+				run.close();
+			}
+		}
+	}
+
+	/**
+	* Reader of one spilled run, ordered by the word it is currently on
+	**/
+	private static class Run implements Comparable<Run>{
+		private final BufferedReader reader; //the run file
+		private String head; //the word the run is on
+
+		/**
+		* Opens a run file
+		* @param file the run file
+		* @throws IOException if the file cannot be opened
+		**/
+		Run(File file) throws IOException{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),"UTF-8"),1<<16);
+		}
+
+		/**
+		* Moves to the next word of the run
+		* @return false if the run is used up
+		* @throws IOException if the file cannot be read
+		**/
+		boolean next() throws IOException{
+			head = reader.readLine();
+			return head!=null;
+		}
+
+		/**
+		* Closes the run file
+		* @throws IOException if the file cannot be closed
+		**/
+		void close() throws IOException{
+			reader.close();
+		}
+
+		/**
+		* Orders runs by their current word
+		* @param other the run to compare with
+		* @return the order of the two current words
+		**/
+		public int compareTo(Run other){
+			return head.compareTo(other.head);
+		}
+	}
+}
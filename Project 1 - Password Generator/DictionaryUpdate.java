@@ -0,0 +1,287 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+* Applies words added to the dictionary to the password files of an earlier -g without regenerating them
+* The word list written by that run (my_dictionary.txt) and the word list of the new dictionary are both
+* sorted, so a single merge pass finds the words that were added and removed
+* A valid password only becomes invalid if it holds one of the added words, so the password files are filtered
+* through an automaton of just those words, which gives the same files -g would
+* Each shard's minimized trie is first walked together with that automaton, so only the shards that really
+* hold a password with an added word are read and rewritten; good_passwords.txt is a single file holding every
+* shard, so it is still read and rewritten whole whenever any shard lost passwords
+* Removed words can make new passwords valid, which needs the full search of -g
+* @author Jake Halloran
+* @version 1.0
+**/
+public class DictionaryUpdate{
+	private final PasswordPolicy policy; //policy the password files were generated with
+	private final List<String> added; //sorted words in the new word list but not the old one
+	private int removed; //words in the old word list but not the new one
+	private int changedShards; //shard files that lost passwords in apply
+
+	/**
+	* Compares the word list of the last generation with a new one
+	* @param policy password policy the password files were generated with
+	* @param oldWords word list written by the last -g, one word per line in sorted order
+	* @param newWords word list of the new dictionary, one word per line in sorted order
+	* @throws IOException if either list cannot be read or is not sorted
+	**/
+	public DictionaryUpdate(PasswordPolicy policy, String oldWords, String newWords) throws IOException{
+		this.policy = policy;
+		added = new ArrayList<String>();
+		BufferedReader before = new BufferedReader(new FileReader(oldWords));
+		BufferedReader after = new BufferedReader(new FileReader(newWords));
+		try{
+			String oldWord = nextWord(before,null,oldWords);
+			String newWord = nextWord(after,null,newWords);
+			while(oldWord!=null||newWord!=null){
+				int order = oldWord==null?1:newWord==null?-1:oldWord.compareTo(newWord);
+				if(order<0){
+					removed++;
+					oldWord = nextWord(before,oldWord,oldWords);
+				}
+				else if(order>0){
+					added.add(newWord);
+					newWord = nextWord(after,newWord,newWords);
+				}
+				else{
+					oldWord = nextWord(before,oldWord,oldWords);
+					newWord = nextWord(after,newWord,newWords);
+				}
+			}
+		}
+		finally{
+			before.close();
+			after.close();
+		}
+	}
+
+	/**
+	* Reads the next word of a sorted word list
+	* @param words the word list
+	* @param previous the word read before, or null at the start of the list
+	* @param fileName name of the word list for error messages
+	* @return the next word, or null at the end of the list
+	* @throws IOException if the list cannot be read or the word is not after the previous one
+	**/
+	private static String nextWord(BufferedReader words, String previous, String fileName) throws IOException{
+		String word;
+		do{
+			word = words.readLine();
+		}while(word!=null&&word.length()==0);
+		if(word!=null&&previous!=null&&word.compareTo(previous)<=0){
+			throw new IOException(fileName+" is not sorted, run with the command flag -g to regenerate.");
+		}
+		return word;
+	}
+
+	/**
+	* Returns the number of words added to the dictionary
+	* @return the added word count
+	**/
+	public int getAdded(){
+		return added.size();
+	}
+
+	/**
+	* Returns the number of words removed from the dictionary, if there are any the update cannot be applied
+	* @return the removed word count
+	**/
+	public int getRemoved(){
+		return removed;
+	}
+
+	/**
+	* Returns the number of shard files the last apply changed
+	* @return the changed shard count
+	**/
+	public int getChangedShards(){
+		return changedShards;
+	}
+
+	/**
+	* Removes every password holding an added word from the shards, their snapshots, good_passwords.txt and the bitset
+	* @param goodBits writable bitset of valid passwords, or null if there is none
+	* @return the number of passwords removed from good_passwords.txt
+	* @throws IOException if a password file cannot be read or replaced
+	* @throws IllegalStateException if words were removed from the dictionary
+	**/
+	public long apply(PasswordBitset goodBits) throws IOException{
+		if(removed>0){
+			throw new IllegalStateException("Words removed from the dictionary need a full regeneration.");
+		}
+		changedShards = 0;
+		if(added.isEmpty()){
+			return 0;
+		}
+		DictionaryAutomaton automaton = new DictionaryAutomaton(new DlbTrie(null,added.iterator(),'^'),policy);
+
+		//Each shard holding an added word is filtered on its own and rewritten along with its snapshot
+		for(int i=0;i<policy.alphabetSize();i++){
+			if(!policy.isAllowed(i)){
+				continue;
+			}
+			String shard = policy.shardName(policy.charAt(i));
+			String compressedShard = ShardCache.compressedName(shard);
+			boolean exists = new File(shard).exists()||new File(compressedShard).exists();
+			if(!exists||!holdsWord(ShardCache.read(shard,policy.getAlphabet()),automaton)){
+				continue;
+			}
+			if(new File(compressedShard).exists()){
+				if(filterCompressed(compressedShard,automaton)>0){
+					changedShards++;
+					FrontCodedShard.open(compressedShard,policy.getAlphabet()).toTrie().writeSnapshot(ShardCache.snapshotName(shard),policy.getAlphabet());
+				}
+			}
+			else if(new File(shard).exists()&&filter(shard,automaton,null)>0){
+				changedShards++;
+				ShardCache.load(shard).writeSnapshot(ShardCache.snapshotName(shard),policy.getAlphabet());
+			}
+		}
+		if(changedShards==0){
+			return 0;
+		}
+		long forbidden = filter("good_passwords.txt",automaton,goodBits);
+		if(goodBits!=null){
+			goodBits.force();
+		}
+		return forbidden;
+	}
+
+	/**
+	* Rewrites a password file without the passwords holding an added word, leaving it untouched if there are none
+	* @param fileName the password file
+	* @param automaton automaton of the added words
+	* @param goodBits bitset to remove the dropped passwords from, or null
+	* @return the number of passwords dropped
+	* @throws IOException if the file cannot be read or replaced
+	**/
+	private long filter(String fileName, DictionaryAutomaton automaton, PasswordBitset goodBits) throws IOException{
+		File file = new File(fileName);
+		File filtered = new File(fileName+".tmp");
+		long dropped = 0;
+		BufferedReader in = new BufferedReader(new FileReader(file),1<<16);
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filtered),1<<16));
+		try{
+			String pass;
+			while((pass = in.readLine())!=null){
+				if(automaton.holdsWord(pass,0,pass.length())){
+					dropped++;
+					if(goodBits!=null){
+						goodBits.remove(pass);
+					}
+				}
+				else{
+					out.println(pass);
+				}
+			}
+		}
+		catch(IOException e){
+			out.close();
+			filtered.delete();
+			throw e;
+		}
+		finally{
+			in.close();
+			out.close();
+		}
+		if(out.checkError()){
+			filtered.delete();
+			throw new IOException("Error writing "+filtered+".");
+		}
+		if(dropped>0){
+			Files.move(filtered.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING);
+		}
+		else{
+			filtered.delete();
+		}
+		return dropped;
+	}
+
+	/**
+	* Rewrites a front coded shard without the passwords holding an added word, leaving it untouched if there are none
+	* @param fileName the front coded shard
+	* @param automaton automaton of the added words
+	* @return the number of passwords dropped
+	* @throws IOException if the shard cannot be read or replaced
+	**/
+	private long filterCompressed(String fileName, DictionaryAutomaton automaton) throws IOException{
+		File file = new File(fileName);
+		File filtered = new File(fileName+".tmp");
+		long dropped = 0;
+		Iterator<String> passwords = FrontCodedShard.open(fileName,policy.getAlphabet()).iterator();
+		FrontCodedShard.ShardWriter out = new FrontCodedShard.ShardWriter(filtered.getPath(),policy.getAlphabet(),FrontCodedShard.BLOCK_SIZE);
+		try{
+			while(passwords.hasNext()){
+				String pass = passwords.next();
+				if(automaton.holdsWord(pass,0,pass.length())){
+					dropped++;
+				}
+				else{
+					out.add(pass);
+				}
+			}
+		}
+		catch(IOException e){
+			out.close();
+			filtered.delete();
+			throw e;
+		}
+		finally{
+			out.close();
+		}
+		if(dropped>0){
+			Files.move(filtered.toPath(),file.toPath(),StandardCopyOption.REPLACE_EXISTING);
+		}
+		else{
+			filtered.delete();
+		}
+		return dropped;
+	}
+
+	/**
+	* Checks whether any password of a shard holds an added word without reading the passwords one at a time
+	* The trie is walked together with the automaton, and a node already reached in the same state is not walked
+	* again, so a minimized shard costs at most its node count times the automaton's state count
+	* @param shard the shard trie, whose passwords end in the '+' valid password flag
+	* @param automaton automaton of the added words
+	* @return true if some password in the shard holds an added word
+	**/
+	private boolean holdsWord(DlbTrie shard, DictionaryAutomaton automaton){
+		return holdsWord(shard,automaton,DlbTrie.ROOT,automaton.start(),new HashSet<Long>());
+	}
+
+	/**
+	* Recursive helper of the shard check, walking the children of one node
+	* @param shard the shard trie
+	* @param automaton automaton of the added words
+	* @param node index of the node whose children are walked
+	* @param state automaton state after the characters on the path to node
+	* @param seen every node and state pair already walked, as node times the state count plus state
+	* @return true if a password below node holds an added word
+	**/
+	private boolean holdsWord(DlbTrie shard, DictionaryAutomaton automaton, int node, int state, Set<Long> seen){
+		for(int child=shard.getFirstChild(node);child!=DlbTrie.NONE;child=shard.getNextSibling(child)){
+			char c = shard.getKey(child);
+			if(c=='+'){
+				continue; //the flag ends a password, every other node is on the path of one
+			}
+			int index = policy.indexOf(c);
+			int nextState = index<0?automaton.start():automaton.next(state,index);
+			if(automaton.isWordEnd(nextState)){
+				return true;
+			}
+			if(seen.add((long)child*automaton.size()+nextState)&&holdsWord(shard,automaton,child,nextState,seen)){
+				return true;
+			}
+		}
+		return false;
+	}
+}
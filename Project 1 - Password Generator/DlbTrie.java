@@ -0,0 +1,1196 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+* Array backed version of the DLB trie
+* every node lives in parallel primitive arrays (character, first child index, next sibling index)
+* so no node objects or one character strings are created while loading words
+* node 0 is always the root and holds no character
+* once a trie is fully built and safely published, any number of threads may query it at once,
+* since the query methods only read the node arrays
+* a built trie can be minimized into a DAWG, where every set of identical subtrees and sibling lists is
+* stored once; the queries only ever walk downwards, so they work on it unchanged
+* @author Jake Halloran
+* @version 1.0
+**/
+public class DlbTrie{
+	static final int NONE = -1; //index stored when a node has no child or sibling
+	static final int ROOT = 0; //index of the root node
+	private static final int SNAPSHOT_MAGIC = 0x444c4254; //"DLBT", first int of a snapshot file
+	private static final int SNAPSHOT_VERSION = 2; //snapshot layout version, 2 added the word length range
+	private char keys[]; //character stored at each node
+	private int firstChild[]; //index of the first child of each node
+	private int nextSibling[]; //index of the next peer of each node
+	private int size; //number of nodes in use
+	private int minLength = Integer.MAX_VALUE; //length of the shortest word, not counting its flag
+	private int maxLength = 0; //length of the longest word, not counting its flag
+	private boolean subFlag; //boolean flag indicating whether or not to sub symbols for chars
+	private boolean minimized; //true once identical subtrees are shared, after which no words can be added
+	private PrintWriter my_dictionary; //object to handle writing the trie to disk
+	private final ByteLine line = new ByteLine(); //reusable view of a line of bytes being added
+
+	/**
+	* Root level constructor, contains output writer and boolean flag saying whether or not to substitute data
+	* @param my_dictionary the output file writer for printing the trie, may be null if the trie is never written
+	* @param subFlag boolean argument that determines whether or not to substitue symbols for letters
+	**/
+	public DlbTrie(PrintWriter my_dictionary, boolean subFlag){
+		this(my_dictionary,subFlag,1024);
+	}
+
+	/**
+	* Root level constructor that presizes the node arrays
+	* @param my_dictionary the output file writer for printing the trie, may be null if the trie is never written
+	* @param subFlag boolean argument that determines whether or not to substitue symbols for letters
+	* @param capacity number of nodes to allocate space for up front
+	**/
+	public DlbTrie(PrintWriter my_dictionary, boolean subFlag, int capacity){
+		this.my_dictionary = my_dictionary;
+		this.subFlag = subFlag;
+		capacity = Math.max(capacity,1);
+		keys = new char[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+		size = 0;
+		newNode('\0'); //root node
+	}
+
+	/**
+	* Bulk build root constructor that builds the whole trie from words in sorted order in a single pass
+	* Words sharing a prefix arrive together, so every new node is the last child of a node on the last word's
+	* path, and the previous last child is the next node on that path; each node is linked in place without
+	* searching a sibling list
+	* @param my_dictionary the output file writer for printing the trie, may be null if it is never printed
+	* @param words the words in ascending String order without duplicates, not including their flag
+	* @param flag end of word flag added after every word
+	* @throws IllegalArgumentException if the words are not sorted and distinct
+	**/
+	public DlbTrie(PrintWriter my_dictionary, Iterator<? extends CharSequence> words, char flag){
+		this(my_dictionary,false,1024);
+		int path[] = new int[16]; //path[d] is the node at depth d on the last word's path
+		int depth = 0; //depth of the last word's flag node
+		path[0] = ROOT;
+
+		while(words.hasNext()){
+			CharSequence word = words.next();
+			int length = word.length()+1; //depth of this word's flag node
+
+			//Finds how much of the last word's path this word shares
+			int common = 0;
+			while(common<depth&&common<length&&charAt(word,common,flag)==keys[path[common+1]]){
+				common++;
+			}
+			//Unless the last word ended here, this word must go on with a larger character than it did
+			if(depth>0&&(common==length||(common<depth-1&&(common==length-1||charAt(word,common,flag)<keys[path[common+1]])))){
+				throw new IllegalArgumentException(word+" is out of order or repeated.");
+			}
+			noteLength(word.length());
+
+			//The first new node follows the last word's node at that depth, every later one is a first child
+			if(length>=path.length){
+				path = Arrays.copyOf(path,length*2);
+			}
+			for(int d=common;d<length;d++){
+				int created = newNode(charAt(word,d,flag));
+				if(d==common&&d<depth){
+					nextSibling[path[d+1]] = created;
+				}
+				else{
+					firstChild[path[d]] = created;
+				}
+				path[d+1] = created;
+			}
+			depth = length;
+		}
+	}
+
+	/**
+	* Returns a character of a word followed by its flag
+	* @param word the word
+	* @param i position in the word, the flag being at word.length()
+	* @param flag end of word flag
+	* @return the character at position i
+	**/
+	private static char charAt(CharSequence word, int i, char flag){
+		return i<word.length()?word.charAt(i):flag;
+	}
+
+	/**
+	* Adds a word to the trie, creating nodes only for characters not already present
+	* Additionally adds the symbol substituted versions of the word if the trie was built with the sub flag
+	* @param word the word (including its end of word flag) to add to the trie
+	**/
+	public void add(CharSequence word){
+		checkMutable();
+		noteLength(word.length()-1);
+		insert(ROOT,word,0);
+	}
+
+	/**
+	* Adds the bytes of one line of a buffer as a word followed by an end of word flag
+	* ASCII letters are lower cased as they are read, so no String is created for the line
+	* @param buffer the buffer holding the line, such as a mapped password file
+	* @param start index of the first byte of the line
+	* @param end index one past the last byte of the line, not counting the line break
+	* @param flag end of word flag to add after the line
+	**/
+	public void add(ByteBuffer buffer, int start, int end, char flag){
+		checkMutable();
+		line.buffer = buffer;
+		line.start = start;
+		line.end = end;
+		line.flag = flag;
+		noteLength(end-start);
+		insert(ROOT,line,0);
+		line.buffer = null;
+	}
+
+	/**
+	* Stops words from being added to a minimized trie, where a new child would show up under every shared copy
+	* @throws IllegalStateException if the trie has been minimized
+	**/
+	private void checkMutable(){
+		if(minimized){
+			throw new IllegalStateException("Words cannot be added to a minimized trie.");
+		}
+	}
+
+	/**
+	* Widens the range of word lengths held by the trie, used to bound nearest neighbour searches
+	* @param length length of a word being added, not counting its flag
+	**/
+	private void noteLength(int length){
+		minLength = Math.min(minLength,length);
+		maxLength = Math.max(maxLength,length);
+	}
+
+	/**
+	* Recursively walks the word into the trie one character per level
+	* @param node index of the node whose children hold word.charAt(i)
+	* @param word the word being added
+	* @param i position of the next character of the word to add
+	**/
+	private void insert(int node, CharSequence word, int i){
+		if(i==word.length()){
+			return;
+		}
+		char c = word.charAt(i);
+		insert(childFor(node,c),word,i+1);
+
+		//The root level is substituted by pw_check, every other level is handled here
+		if(subFlag && node!=ROOT){
+			char sub = substitute(c);
+			if(sub!=c){
+				insert(childFor(node,sub),word,i+1);
+			}
+		}
+	}
+
+	/**
+	* Returns the symbol that can stand in for a character, or the character itself if there is none
+	* @param c the character to substitute
+	* @return the substitute for c
+	**/
+	static char substitute(char c){
+		switch (c){
+			case 't': return '7';
+			case 'a': return '4';
+			case 'o': return '0';
+			case 'e': return '3';
+			case 'i': return '1';
+			case 'l': return '1';
+			case 's': return '$';
+		}
+		return c;
+	}
+
+	/**
+	* Finds the child of a node holding a character, appending a new last child if there is none
+	* @param node index of the parent node
+	* @param c the character to find
+	* @return index of the child holding c
+	**/
+	private int childFor(int node, char c){
+		int last = NONE;
+		for(int child=firstChild[node];child!=NONE;child=nextSibling[child]){
+			if(keys[child]==c){
+				return child;
+			}
+			last = child;
+		}
+		int created = newNode(c);
+		if(last==NONE){
+			firstChild[node] = created;
+		}
+		else{
+			nextSibling[last] = created;
+		}
+		return created;
+	}
+
+	/**
+	* Allocates a new childless node, doubling the arrays when they are full
+	* @param c the character the node stores
+	* @return index of the new node
+	**/
+	private int newNode(char c){
+		if(size==keys.length){
+			int capacity = keys.length*2;
+			keys = Arrays.copyOf(keys,capacity);
+			firstChild = Arrays.copyOf(firstChild,capacity);
+			nextSibling = Arrays.copyOf(nextSibling,capacity);
+		}
+		keys[size] = c;
+		firstChild[size] = NONE;
+		nextSibling[size] = NONE;
+		return size++;
+	}
+
+	/**
+	* Finds the child of a node that holds a character
+	* @param node index of the parent node
+	* @param c the character to look for
+	* @return index of the child or -1 if the node has no such child
+	**/
+	private int child(int node, char c){
+		for(int child=firstChild[node];child!=NONE;child=nextSibling[child]){
+			if(keys[child]==c){
+				return child;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	* Returns the first child of a node, used with getNextSibling and getKey to walk the trie from outside of the class
+	* @param node index of the node, ROOT for the root
+	* @return index of the first child, or NONE if the node has no children
+	**/
+	int getFirstChild(int node){
+		return firstChild[node];
+	}
+
+	/**
+	* Returns the next peer of a node
+	* @param node index of the node
+	* @return index of the next sibling, or NONE if the node is the last child of its parent
+	**/
+	int getNextSibling(int node){
+		return nextSibling[node];
+	}
+
+	/**
+	* Returns the character a node stores
+	* @param node index of the node
+	* @return the character
+	**/
+	char getKey(int node){
+		return keys[node];
+	}
+
+	/**
+	* Counts the nodes of the trie, adding each to a histogram of how many children it has
+	* @param fanOut histogram indexed by child count, the last entry counting every larger child count
+	* @return the number of nodes counted
+	**/
+	public long countNodes(long fanOut[]){
+		for(int node=0;node<size;node++){
+			int children = 0;
+			for(int child=firstChild[node];child!=NONE;child=nextSibling[child]){
+				children++;
+			}
+			fanOut[Math.min(children,fanOut.length-1)]++;
+		}
+		return size;
+	}
+
+	/**
+	* Returns the number of nodes in the trie, including the root
+	* @return the node count
+	**/
+	public int size(){
+		return size;
+	}
+
+	/**
+	* Minimizes the trie into a DAWG by storing each distinct subtree once, then trims the arrays
+	* Nodes are merged bottom up: two nodes are the same if they hold the same character, the same (already merged)
+	* first child and the same (already merged) next sibling, so shared suffixes and whole shared sibling lists
+	* collapse into a single copy while every word and the order of every child list stay the same
+	* Nodes are numbered in the order they are created, so children and later siblings always come after their
+	* node and one pass from the last node back to the root sees them first
+	* @return the number of nodes after minimizing
+	**/
+	public int minimize(){
+		if(minimized){
+			return size;
+		}
+		int canon[] = new int[size]; //merged index of every node
+		char newKeys[] = new char[1024]; //merged nodes, grown as they fill since a DAWG is far smaller than its trie
+		int newFirst[] = new int[1024];
+		int newNext[] = new int[1024];
+		int table[] = new int[2048]; //open addressing table of merged nodes, kept at most half full
+		Arrays.fill(table,NONE);
+		int mask = table.length-1;
+		int merged = 1; //index 0 is kept for the root
+
+		for(int node=size-1;node>ROOT;node--){
+			if((firstChild[node]!=NONE&&firstChild[node]<=node)||(nextSibling[node]!=NONE&&nextSibling[node]<=node)){
+				throw new IllegalStateException("Trie nodes are not in creation order.");
+			}
+			char c = keys[node];
+			int first = firstChild[node]==NONE?NONE:canon[firstChild[node]];
+			int next = nextSibling[node]==NONE?NONE:canon[nextSibling[node]];
+
+			//Looks for an identical node already merged, adding this one if there is none
+			int slot = hash(c,first,next)&mask;
+			while(table[slot]!=NONE){
+				int other = table[slot];
+				if(newKeys[other]==c&&newFirst[other]==first&&newNext[other]==next){
+					break;
+				}
+				slot = (slot+1)&mask;
+			}
+			int found = table[slot];
+			if(found==NONE){
+				if(merged==newKeys.length){
+					newKeys = Arrays.copyOf(newKeys,merged*2);
+					newFirst = Arrays.copyOf(newFirst,merged*2);
+					newNext = Arrays.copyOf(newNext,merged*2);
+				}
+				newKeys[merged] = c;
+				newFirst[merged] = first;
+				newNext[merged] = next;
+				found = merged++;
+				table[slot] = found;
+				if(merged*2>table.length){
+					table = rehash(newKeys,newFirst,newNext,merged,table.length*2);
+					mask = table.length-1;
+				}
+			}
+			canon[node] = found;
+		}
+		newKeys[ROOT] = keys[ROOT];
+		newFirst[ROOT] = firstChild[ROOT]==NONE?NONE:canon[firstChild[ROOT]];
+		newNext[ROOT] = NONE;
+
+		keys = Arrays.copyOf(newKeys,merged);
+		firstChild = Arrays.copyOf(newFirst,merged);
+		nextSibling = Arrays.copyOf(newNext,merged);
+		size = merged;
+		minimized = true;
+		return size;
+	}
+
+	/**
+	* Hashes a node by its character, first child and next sibling
+	* @param c the character
+	* @param first index of the first child, or NONE
+	* @param next index of the next sibling, or NONE
+	* @return the hash, to be masked to a table slot
+	**/
+	private static int hash(char c, int first, int next){
+		int hash = ((c*31+first)*31+next)*0x9e3779b9;
+		return hash^(hash>>>16);
+	}
+
+	/**
+	* Builds a larger open addressing table holding every merged node
+	* @param keys characters of the merged nodes
+	* @param first first children of the merged nodes
+	* @param next next siblings of the merged nodes
+	* @param merged number of merged nodes, the root at index 0 is never in the table
+	* @param length length of the new table, a power of two
+	* @return the new table
+	**/
+	private static int[] rehash(char keys[], int first[], int next[], int merged, int length){
+		int table[] = new int[length];
+		Arrays.fill(table,NONE);
+		int mask = length-1;
+		for(int node=1;node<merged;node++){
+			int slot = hash(keys[node],first[node],next[node])&mask;
+			while(table[slot]!=NONE){
+				slot = (slot+1)&mask;
+			}
+			table[slot] = node;
+		}
+		return table;
+	}
+
+	/**
+	* Tells whether the trie has been minimized into a DAWG
+	* @return true if identical subtrees are shared
+	**/
+	public boolean isMinimized(){
+		return minimized;
+	}
+
+	/**
+	* Estimates the heap used by the trie from the length of its node arrays
+	* @return the approximate size of the trie in bytes
+	**/
+	public long memoryUsage(){
+		return 2L*keys.length+4L*firstChild.length+4L*nextSibling.length;
+	}
+
+	/**
+	* Writes the trie to a binary snapshot file that readSnapshot can load without parsing any words
+	* The file holds a header (magic number, version, flags for substituting and minimizing, shortest and longest word
+	* length, password alphabet, node count) followed by the key, first child and next sibling arrays
+	* @param fileName name of the snapshot file
+	* @param alphabet the password policy's alphabet, stored so snapshots of another policy are rejected
+	* @throws IOException if the file cannot be written
+	**/
+	public void writeSnapshot(String fileName, String alphabet) throws IOException{
+		ByteBuffer bytes = ByteBuffer.allocate(snapshotHeaderSize(alphabet)+10*size);
+		bytes.putInt(SNAPSHOT_MAGIC);
+		bytes.putInt(SNAPSHOT_VERSION);
+		bytes.putInt((subFlag?1:0)|(minimized?2:0));
+		bytes.putInt(minLength);
+		bytes.putInt(maxLength);
+		bytes.putInt(alphabet.length());
+		for(int i=0;i<alphabet.length();i++){
+			bytes.putChar(alphabet.charAt(i));
+		}
+		bytes.putInt(size);
+		bytes.asCharBuffer().put(keys,0,size);
+		bytes.position(bytes.position()+2*size);
+		bytes.asIntBuffer().put(firstChild,0,size);
+		bytes.position(bytes.position()+4*size);
+		bytes.asIntBuffer().put(nextSibling,0,size);
+		bytes.rewind();
+
+		FileOutputStream file = new FileOutputStream(fileName);
+		try{
+			FileChannel channel = file.getChannel();
+			while(bytes.hasRemaining()){
+				channel.write(bytes);
+			}
+		}
+		finally{
+			file.close();
+		}
+	}
+
+	/**
+	* Loads a trie written by writeSnapshot
+	* The file is memory mapped read only and each node array is filled with a single bulk copy, and the word
+	* length range is read from the header, so loading never walks the words
+	* @param fileName name of the snapshot file
+	* @param alphabet the password policy's alphabet, which must match the one the snapshot was written with
+	* @return the loaded trie, which has no dictionary writer
+	* @throws IOException if the file cannot be read, is not a snapshot, is truncated, has links out of order or
+	* outside the trie, or was written for a different alphabet
+	**/
+	public static DlbTrie readSnapshot(String fileName, String alphabet) throws IOException{
+		MappedByteBuffer bytes;
+		RandomAccessFile file = new RandomAccessFile(fileName,"r");
+		try{
+			bytes = file.getChannel().map(FileChannel.MapMode.READ_ONLY,0,file.length());
+		}
+		finally{
+			file.close(); //the mapping stays valid after the file is closed
+		}
+
+		//Checks the header before trusting any of the array lengths
+		if(bytes.limit()<snapshotHeaderSize(alphabet)||bytes.getInt()!=SNAPSHOT_MAGIC){
+			throw new IOException(fileName+" is not a trie snapshot.");
+		}
+		if(bytes.getInt()!=SNAPSHOT_VERSION){
+			throw new IOException(fileName+" was written by another version of the trie snapshot.");
+		}
+		int flags = bytes.getInt();
+		int minLength = bytes.getInt(), maxLength = bytes.getInt();
+		if(bytes.getInt()!=alphabet.length()){
+			throw new IOException(fileName+" was written for a different password alphabet.");
+		}
+		for(int i=0;i<alphabet.length();i++){
+			if(bytes.getChar()!=alphabet.charAt(i)){
+				throw new IOException(fileName+" was written for a different password alphabet.");
+			}
+		}
+		int nodes = bytes.getInt();
+		if(nodes<1||bytes.remaining()!=10L*nodes){
+			throw new IOException(fileName+" is truncated.");
+		}
+
+		DlbTrie trie = new DlbTrie(null,(flags&1)!=0,nodes);
+		trie.minimized = (flags&2)!=0;
+		bytes.asCharBuffer().get(trie.keys,0,nodes);
+		bytes.position(bytes.position()+2*nodes);
+		bytes.asIntBuffer().get(trie.firstChild,0,nodes);
+		bytes.position(bytes.position()+4*nodes);
+		bytes.asIntBuffer().get(trie.nextSibling,0,nodes);
+
+		//Every link must name a node of the file in the order the trie was built in, so no walk can loop forever
+		if(trie.nextSibling[ROOT]!=NONE){
+			throw new IOException(fileName+" is corrupt, the root has a sibling.");
+		}
+		for(int i=0;i<nodes;i++){
+			if(!validLink(trie.firstChild[i],i,nodes,trie.minimized)||!validLink(trie.nextSibling[i],i,nodes,trie.minimized)){
+				throw new IOException(fileName+" is corrupt, node "+i+" links out of order or outside the trie.");
+			}
+		}
+		trie.size = nodes;
+		trie.minLength = minLength;
+		trie.maxLength = maxLength;
+		return trie;
+	}
+
+	/**
+	* Checks a child or sibling index read from a snapshot
+	* A trie numbers its nodes as they are created, so every link points to a later node, while minimize numbers
+	* them bottom up, so every link but the root's first child points to an earlier one; links that keep to
+	* this order can never form a cycle
+	* @param link the index
+	* @param node index of the node holding the link
+	* @param nodes number of nodes in the snapshot
+	* @param minimized whether the snapshot is of a minimized trie
+	* @return true if the index is NONE or names a node other than the root in the right direction
+	**/
+	private static boolean validLink(int link, int node, int nodes, boolean minimized){
+		if(link==NONE){
+			return true;
+		}
+		if(link<=ROOT||link>=nodes){
+			return false;
+		}
+		return minimized&&node!=ROOT?link<node:link>node;
+	}
+
+	/**
+	* Returns the number of bytes in front of the node arrays of a snapshot
+	* @param alphabet the password alphabet stored in the header
+	* @return the header size
+	**/
+	private static int snapshotHeaderSize(String alphabet){
+		return 7*4+2*alphabet.length();
+	}
+
+	/**
+	* Prints the trie data to a file, one line per word ending in the '^' end of word flag
+	* @param currentWord the current word that is being built and will be written if eligible
+	* @throws IOException if the my_dictionary file cannot be written to
+	**/
+	public void writeTrie(StringBuilder currentWord) throws IOException{
+		writeTrie(ROOT,currentWord);
+		if(my_dictionary.checkError()){
+			throw new IOException("Error writing trie to file.");
+		}
+	}
+
+	/**
+	* Recursive helper that prints every word below a node
+	* @param node index of the node being written
+	* @param currentWord the characters on the path above node
+	**/
+	private void writeTrie(int node, StringBuilder currentWord){
+		for(int child=firstChild[node];child!=NONE;child=nextSibling[child]){
+			if(keys[child]=='^'){
+				if(node!=ROOT){
+					currentWord.append(keys[node]);
+				}
+				my_dictionary.println(currentWord);
+				if(node!=ROOT){
+					currentWord.deleteCharAt(currentWord.length()-1);
+				}
+			}
+			else{
+				if(node!=ROOT){
+					currentWord.append(keys[node]);
+				}
+				writeTrie(child,currentWord);
+				if(currentWord.length()>0){
+					currentWord.deleteCharAt(currentWord.length()-1);
+				}
+			}
+		}
+	}
+
+	/**
+	*Returns the longest prefix of data possible
+	* @param password the password attempt a prefix is being found for
+	* @param originalLength the original length of the attempted password
+	* @return the length of the longest prefix
+	**/
+	public int findPrefix(String password,int originalLength){
+		int node = ROOT;
+		for(int i=0;;i++){
+			//returns the original length if the word is a valid password or there is nothing left to parse
+			if(child(node,'+')!=NONE||i==password.length()){
+				return originalLength;
+			}
+
+			//default return if the next character is not found in the trie
+			node = child(node,password.charAt(i));
+			if(node==NONE){
+				return originalLength-(password.length()-i);
+			}
+		}
+	}
+
+	/**
+	* Checks whether a whole password is in the trie, unlike findPrefix a shorter valid password is not enough
+	* @param password the password attempt
+	* @return true if the password ends in the '+' valid password flag
+	**/
+	public boolean contains(CharSequence password){
+		int node = ROOT;
+		for(int i=0;i<password.length()&&node!=NONE;i++){
+			node = child(node,password.charAt(i));
+		}
+		return node!=NONE&&child(node,'+')!=NONE;
+	}
+
+	/**
+	* Finds the valid passwords closest to an attempt by Damerau-Levenshtein (optimal string alignment) distance
+	* Walks the trie keeping one distance row per level, and skips any subtree whose lower bound is already
+	* worse than the kth best password found so far, the bound being the best way to finish the row given
+	* the lengths of the words in the trie
+	* The search is repeated with a growing distance limit so the common case of close matches only
+	* visits the few nodes within a small distance of the attempt
+	* @param query the password attempt
+	* @param k the most passwords to return, nothing is searched for if it is not positive
+	* @param maxDistance the largest edit distance a returned password may have
+	* @return up to k valid passwords without their '+' flag, closest first, ties in trie order
+	**/
+	public List<String> nearest(String query, int k, int maxDistance){
+		if(k<=0){
+			return new ArrayList<String>(0);
+		}
+		Nearest search = null;
+		for(int limit=Math.min(1,maxDistance);search==null||(search.found<k&&limit<=maxDistance);limit++){
+			search = new Nearest(query,k,limit);
+			int first[] = search.row(0);
+			for(int j=0;j<first.length;j++){
+				first[j] = j;
+			}
+			search.walk(ROOT,0);
+		}
+
+		List<String> closest = new ArrayList<String>(search.found);
+		for(int i=0;i<search.found;i++){
+			closest.add(search.words[i]);
+		}
+		return closest;
+	}
+
+	/**
+	* Per query state for nearest, kept out of the trie so concurrent queries never share it
+	**/
+	private class Nearest{
+		private final String query; //the password attempt
+		private final int maxDistance; //largest distance accepted
+		private int rows[][]; //rows[d] holds the distances from the first d path characters to each query prefix
+		private char path[]; //characters on the path from the root to the current node
+		private final String words[]; //best passwords found so far, closest first
+		private final int distances[]; //distance of each password in words
+		private int found; //number of passwords in words
+
+		/**
+		* Sets up an empty search
+		* @param query the password attempt
+		* @param k the most passwords to keep
+		* @param maxDistance largest distance accepted
+		**/
+		Nearest(String query, int k, int maxDistance){
+			this.query = query;
+			this.maxDistance = maxDistance;
+			rows = new int[8][];
+			path = new char[8];
+			words = new String[k];
+			distances = new int[k];
+		}
+
+		/**
+		* Returns the row for a depth, allocating it the first time that depth is reached
+		* @param depth number of path characters the row is for
+		* @return the row
+		**/
+		int[] row(int depth){
+			if(depth==rows.length){
+				rows = Arrays.copyOf(rows,depth*2);
+				path = Arrays.copyOf(path,depth*2);
+			}
+			if(rows[depth]==null){
+				rows[depth] = new int[query.length()+1];
+			}
+			return rows[depth];
+		}
+
+		/**
+		* Returns the largest distance that could still make it into the results
+		* @return the current bound, one less than the worst kept distance once k passwords are kept
+		**/
+		int bound(){
+			if(found<words.length){
+				return maxDistance;
+			}
+			return distances[found-1]-1;
+		}
+
+		/**
+		* Visits a node whose distance row is already filled in
+		* @param node index of the node
+		* @param depth number of characters on the path to the node
+		**/
+		void walk(int node, int depth){
+			int current[] = rows[depth];
+			int m = query.length();
+			if(child(node,'+')!=NONE&&current[m]<=bound()){
+				keep(new String(path,0,depth),current[m]);
+			}
+
+			for(int child=firstChild[node];child!=NONE;child=nextSibling[child]){
+				char c = keys[child];
+				if(c=='+'){
+					continue;
+				}
+
+				//Fills in the next row, including the transposition of the last two characters
+				int next[] = row(depth+1);
+				current = rows[depth];
+				next[0] = depth+1;
+				int smallest = next[0];
+				for(int j=1;j<=m;j++){
+					int cost = query.charAt(j-1)==c?0:1;
+					int distance = Math.min(Math.min(current[j]+1,next[j-1]+1),current[j-1]+cost);
+					if(depth>0&&j>1&&query.charAt(j-1)==path[depth-1]&&query.charAt(j-2)==c){
+						distance = Math.min(distance,rows[depth-1][j-2]+1);
+					}
+					next[j] = distance;
+					smallest = Math.min(smallest,distance);
+				}
+
+				//Nothing below the child can beat the passwords already kept
+				if(Math.max(smallest,lowerBound(next,current,c,depth+1))<=bound()){
+					path[depth] = c;
+					walk(child,depth+1);
+				}
+			}
+		}
+
+		/**
+		* Returns the least distance any word below a node can have, from its row and the remaining word lengths
+		* Each query split point j costs row[j] plus the difference between the query characters left and the
+		* word characters left, a transposition across the split is covered by the row above
+		* @param row the node's row
+		* @param above the row of the node's parent
+		* @param c the node's character
+		* @param depth the node's depth
+		* @return the lower bound on the distance of words below the node
+		**/
+		int lowerBound(int row[], int above[], char c, int depth){
+			int m = query.length();
+			int fewest = Math.max(0,minLength-depth), most = maxLength-depth;
+			if(most<0){
+				return Integer.MAX_VALUE;
+			}
+			int best = Integer.MAX_VALUE;
+			for(int j=0;j<=m;j++){
+				int left = m-j;
+				int gap = left<fewest?fewest-left:(left>most?left-most:0);
+				best = Math.min(best,row[j]+gap);
+				if(j>=1&&j<m&&query.charAt(j)==c){
+					best = Math.min(best,above[j-1]+1+gap);
+				}
+			}
+			return best;
+		}
+
+		/**
+		* Inserts a password into the sorted results, dropping the worst one if there are already k
+		* @param word the password
+		* @param distance its distance from the query
+		**/
+		void keep(String word, int distance){
+			int i = Math.min(found,words.length-1);
+			while(i>0&&distances[i-1]>distance){
+				words[i] = words[i-1];
+				distances[i] = distances[i-1];
+				i--;
+			}
+			words[i] = word;
+			distances[i] = distance;
+			if(found<words.length){
+				found++;
+			}
+		}
+	}
+
+	/**
+	* Character view of a line of bytes with the end of word flag appended, used by add(ByteBuffer...)
+	**/
+	private static class ByteLine implements CharSequence{
+		ByteBuffer buffer; //buffer holding the line
+		int start; //index of the first byte of the line
+		int end; //index one past the last byte of the line
+		char flag; //end of word flag read after the last byte
+
+		/**
+		* Returns the number of characters in the line, including the flag
+		* @return the line length
+		**/
+		public int length(){
+			return end-start+1;
+		}
+
+		/**
+		* Returns a lower cased character of the line, or the flag after the last byte
+		* @param index position of the character
+		* @return the character
+		**/
+		public char charAt(int index){
+			if(start+index==end){
+				return flag;
+			}
+			char c = (char)(buffer.get(start+index)&0xff);
+			if(c>='A'&&c<='Z'){
+				c += 'a'-'A';
+			}
+			return c;
+		}
+
+		/**
+		* Returns part of the line as a new String, not used while adding
+		* @param from index of the first character
+		* @param to index one past the last character
+		* @return the characters in the range
+		**/
+		public CharSequence subSequence(int from, int to){
+			return toString().substring(from,to);
+		}
+
+		/**
+		* Copies the line and its flag into a String
+		* @return the line
+		**/
+		public String toString(){
+			StringBuilder copy = new StringBuilder(length());
+			for(int i=0;i<length();i++){
+				copy.append(charAt(i));
+			}
+			return copy.toString();
+		}
+	}
+
+	/**
+	*Generates the first character of every password allowed by a policy
+	*Additionally, writes each first character's passwords to its front coded shard and trie snapshot
+	*Builds the dictionary automaton from this trie so the recursion can check each new character in constant time
+	* @param policy password policy giving the length, alphabet and character class limits
+	* @param pass password or papssword prefix being currently validated
+	* @param goodPass print writer used to print validated passwords to file
+	* @param goodBits bitset that every valid password is added to, or null to skip it
+	* @param metrics metrics the search is counted into, or null to skip counting
+	* @throws IOException if any of the subfiles are unable to be written to
+	**/
+	public void startGeneration(PasswordPolicy policy, StringBuilder pass, PrintWriter goodPass, PasswordBitset goodBits, PasswordMetrics metrics) throws IOException{
+		char nextChar;
+		DictionaryAutomaton automaton = new DictionaryAutomaton(this,policy);
+		int counts[] = new int[3]; //letters, digits and symbols in the current password
+		PasswordMetrics.Search search = metrics==null?null:metrics.newSearch();
+
+		for(int i=0;i<policy.alphabetSize();i++){
+
+			//Throws out illegal characters
+			if(!policy.isAllowed(i)){
+				continue;
+			}
+
+			//Gets the next character to append to the current state
+			nextChar = policy.charAt(i);
+
+			//Opens individual shard files
+			ShardBuilder shard = new ShardBuilder(policy.shardName(nextChar),policy.getAlphabet());
+
+			//Generates every password starting with the character
+			try{
+				generateShard(pass,policy,automaton,i,counts,goodPass,shard,goodBits,search);
+			}
+			finally{
+				shard.close();
+			}
+		}
+		if(search!=null){
+			metrics.record(search);
+		}
+	}
+
+	/**
+	* Generates the same files as startGeneration, but each first character subtree is its own fork/join task
+	* with its own password builder and shard files, the finished front coded shards are then decoded into goodPass
+	* in alphabet order so good_passwords.txt comes out exactly as it does from the sequential version
+	* @param policy password policy giving the length, alphabet and character class limits
+	* @param goodPass print writer used to print validated passwords to file
+	* @param goodBits bitset that every valid password is added to, or null to skip it
+	* @param threads number of worker threads to generate with
+	* @param metrics metrics each shard's search is counted into, or null to skip counting
+	* @throws IOException if any of the subfiles are unable to be written to or read back
+	**/
+	public void startParallelGeneration(PasswordPolicy policy, PrintWriter goodPass, PasswordBitset goodBits, int threads, PasswordMetrics metrics) throws IOException{
+		DictionaryAutomaton automaton = new DictionaryAutomaton(this,policy);
+		List<ShardTask> tasks = new ArrayList<ShardTask>();
+		for(int i=0;i<policy.alphabetSize();i++){
+			if(!policy.isAllowed(i)){
+				continue;
+			}
+			tasks.add(new ShardTask(policy,automaton,goodBits,metrics,i));
+		}
+
+		//Runs every shard on the pool and waits for all of them, passing on the first write error
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try{
+			for(ShardTask task : tasks){
+				pool.execute(task);
+			}
+			for(ShardTask task : tasks){
+				task.join();
+			}
+		}
+		catch(UncheckedIOException e){
+			throw e.getCause();
+		}
+		finally{
+			pool.shutdown();
+		}
+
+		//Merges the shards in order
+		for(ShardTask task : tasks){
+			Iterator<String> shard = FrontCodedShard.open(ShardCache.compressedName(task.fileName),policy.getAlphabet()).iterator();
+			while(shard.hasNext()){
+				goodPass.println(shard.next());
+			}
+		}
+	}
+
+	/**
+	* Fork/join task that generates every password starting with one character into that character's shard files
+	**/
+	private static class ShardTask extends RecursiveAction{
+		private static final long serialVersionUID = 1L; //tasks are never serialized, but RecursiveAction is Serializable
+		private final PasswordPolicy policy; //policy every password follows
+		private final DictionaryAutomaton automaton; //shared read only dictionary automaton
+		private final PasswordBitset goodBits; //shared bitset of valid passwords, may be null
+		private final PasswordMetrics metrics; //shared metrics, may be null
+		private final int index; //alphabet index of the first character
+		private final String fileName; //text shard name this task's shard files are named after
+
+		/**
+		* Creates the task for one first character
+		* @param policy password policy giving the length, alphabet and character class limits
+		* @param automaton dictionary automaton shared by every task
+		* @param goodBits bitset of valid passwords shared by every task, may be null
+		* @param metrics metrics shared by every task, may be null
+		* @param index alphabet index of the first character
+		**/
+		ShardTask(PasswordPolicy policy, DictionaryAutomaton automaton, PasswordBitset goodBits, PasswordMetrics metrics, int index){
+			this.policy = policy;
+			this.automaton = automaton;
+			this.goodBits = goodBits;
+			this.metrics = metrics;
+			this.index = index;
+			fileName = policy.shardName(policy.charAt(index));
+		}
+
+		/**
+		* Generates the shard, rethrowing write errors unchecked so they reach startParallelGeneration
+		**/
+		protected void compute(){
+			PasswordMetrics.Search search = metrics==null?null:metrics.newSearch();
+			try{
+				ShardBuilder shard = new ShardBuilder(fileName,policy.getAlphabet());
+				try{
+					generateShard(new StringBuilder(policy.getMaxLength()),policy,automaton,index,new int[3],null,shard,goodBits,search);
+				}
+				finally{
+					shard.close();
+				}
+				if(search!=null){
+					metrics.record(search);
+				}
+			}
+			catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	* Generates every valid password starting with one character, the work of a single shard
+	* @param pass empty password builder, left empty again when this returns
+	* @param policy password policy giving the length, alphabet and character class limits
+	* @param automaton dictionary automaton used to throw out prefixes containing a dictionary word
+	* @param index alphabet index of the first character, which must be allowed by the policy
+	* @param counts zeroed class counters, left zeroed again when this returns
+	* @param goodPass print writer used to print validated passwords to file, or null to only write the shard
+	* @param shard shard files every password starting with the character is written to, or null to skip them
+	* @param goodBits bitset that every valid password is added to, or null to skip it
+	* @param search counters of this thread's search, or null to skip counting
+	* @throws IOException if the shard files cannot be written to
+	**/
+	public static void generateShard(StringBuilder pass, PasswordPolicy policy, DictionaryAutomaton automaton, int index, int counts[], PrintWriter goodPass, ShardBuilder shard, PasswordBitset goodBits, PasswordMetrics.Search search) throws IOException{
+
+		//add the first character to the password and to the counters
+		pass.append(policy.charAt(index));
+		counts[policy.classOf(index)] = 1;
+
+		//Recursively generate password possibilities unless the character is a word on its own
+		int state = automaton.next(automaton.start(),index);
+		if(!automaton.isWordEnd(state)&&policy.canFinish(counts,1)){
+			if(policy.isComplete(counts,1)){
+				writePassword(pass,goodPass,shard,goodBits);
+				if(search!=null){
+					search.passwords++;
+				}
+			}
+			recursiveGenerate(pass,policy,automaton,state,counts,goodPass,shard,goodBits,search);
+		}
+
+		//delete the first character and reset the counters so the next shard starts clean
+		pass.setLength(0);
+		counts[policy.classOf(index)] = 0;
+	}
+
+	/**
+	* Generates valid passwords one character at a time, pruning as it goes
+	* A character is only tried if it does not finish a dictionary word and the class counts after it can still
+	* be completed within the policy, so no subtree without a valid password is ever entered
+	* @param pass password or papssword prefix being currently validated
+	* @param policy password policy giving the length, alphabet and character class limits
+	* @param automaton dictionary automaton used to throw out prefixes containing a dictionary word
+	* @param state automaton state reached after reading pass
+	* @param counts letters, digits and symbols in pass, indexed by class, restored before returning
+	* @param goodPass print writer used to print validated passwords to file, or null to only write the shard
+	* @param shard shard files every password starting with the same character is written to, or null to skip them
+	* @param goodBits bitset that every valid password is added to, or null to skip it
+	* @param search counters of this thread's search, or null to skip counting
+	* @throws IOException if the shard files cannot be written to
+	**/
+	public static void recursiveGenerate(StringBuilder pass, PasswordPolicy policy, DictionaryAutomaton automaton, int state, int counts[], PrintWriter goodPass, ShardBuilder shard, PasswordBitset goodBits, PasswordMetrics.Search search) throws IOException{
+		int length = pass.length()+1; //length of the passwords built at this level
+		int slot = PasswordMetrics.Search.slot(length-1); //counter slot of the prefix being extended
+		if(search!=null){
+			search.visited[slot]++;
+		}
+
+		for(int i=0;i<policy.alphabetSize();i++){
+
+			//Throws out illegal characters
+			if(!policy.isAllowed(i)){
+				continue;
+			}
+
+			//Throws out characters that complete a dictionary word
+			int nextState = automaton.next(state,i);
+			if(automaton.isWordEnd(nextState)){
+				if(search!=null){
+					search.prunedWord[slot]++;
+				}
+				continue;
+			}
+
+			//Adds to the class count of the character, skipping it if the counts can no longer make a password
+			int type = policy.classOf(i);
+			counts[type]++;
+			if(policy.canFinish(counts,length)){
+
+				//Appends the new character to the password and prints it if it is complete
+				pass.append(policy.charAt(i));
+				if(policy.isComplete(counts,length)){
+					writePassword(pass,goodPass,shard,goodBits);
+					if(search!=null){
+						search.passwords++;
+					}
+				}
+
+				//Longer passwords may still start with this one
+				if(length<policy.getMaxLength()){
+					recursiveGenerate(pass,policy,automaton,nextState,counts,goodPass,shard,goodBits,search);
+				}
+				pass.setLength(length-1);
+			}
+			else if(search!=null){
+				search.prunedPolicy[slot]++;
+			}
+
+			//Deincrements the count for the next character
+			counts[type]--;
+		}
+	}
+
+	/**
+	* Writes out one valid password
+	* @param pass the valid password
+	* @param goodPass print writer used to print validated passwords to file, or null to only write the shard
+	* @param shard shard files every password starting with the same character is written to, or null to skip them
+	* @param goodBits bitset that every valid password is added to, or null to skip it
+	* @throws IOException if the shard files cannot be written to
+	**/
+	private static void writePassword(StringBuilder pass, PrintWriter goodPass, ShardBuilder shard, PasswordBitset goodBits) throws IOException{
+		if(goodPass!=null){
+			goodPass.println(pass);
+		}
+		if(shard!=null){
+			shard.add(pass);
+		}
+		if(goodBits!=null){
+			goodBits.add(pass);
+		}
+	}
+
+	/**
+	* Writes one shard's front coded file and trie snapshot as its passwords are generated, so the shard is never
+	* written out as text and read back; any text shard of an older generation is removed once they are written
+	**/
+	static class ShardBuilder{
+		private final String fileName; //name of the text shard the files are named after
+		private final String alphabet; //password alphabet of the policy
+		private final FrontCodedShard.ShardWriter writer; //front coded shard being written
+		private final DlbTrie trie = new DlbTrie(null,false); //trie of the shard, snapshotted once it is complete
+		private final StringBuilder word = new StringBuilder(); //password followed by the '+' valid password flag
+
+		/**
+		* Creates the front coded shard file
+		* @param fileName name of the text shard
+		* @param alphabet password alphabet of the policy
+		* @throws IOException if the file cannot be created
+		**/
+		ShardBuilder(String fileName, String alphabet) throws IOException{
+			this.fileName = fileName;
+			this.alphabet = alphabet;
+			writer = new FrontCodedShard.ShardWriter(ShardCache.compressedName(fileName),alphabet,FrontCodedShard.BLOCK_SIZE);
+		}
+
+		/**
+		* Adds the next password in generation order
+		* @param pass the password
+		* @throws IOException if the front coded shard cannot be written
+		**/
+		void add(CharSequence pass) throws IOException{
+			writer.add(pass);
+			word.setLength(0);
+			word.append(pass).append('+');
+			trie.add(word);
+		}
+
+		/**
+		* Finishes the front coded shard, then minimizes the trie and writes its snapshot
+		* @throws IOException if either file cannot be written
+		**/
+		void close() throws IOException{
+			writer.close();
+			trie.minimize();
+			trie.writeSnapshot(ShardCache.snapshotName(fileName),alphabet);
+			new File(fileName).delete();
+		}
+	}
+}
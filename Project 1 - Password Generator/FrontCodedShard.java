@@ -0,0 +1,485 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+* Read only password shard stored as front coded blocks
+* Passwords are kept in generation order (alphabet order, a prefix before the passwords it starts) and
+* split into blocks of a fixed number of passwords; the first password of a block is stored whole and
+* every other one as the length it shares with the password before it plus the rest of its characters,
+* so the long shared prefixes of a shard are stored once per block
+* Both lengths of a front coded password share a single byte, four bits each, when they are under 15, which
+* is nearly always, so most passwords take two bytes against the six of a line of a 5 character text shard
+* An index of block offsets at the end of the file lets a lookup binary search the first password of each
+* block and then decode a single block, without ever decompressing the rest of the shard
+* File layout: magic number, version, block size, longest password, password alphabet, the blocks, the block
+* index, and a trailer of the password count, block count and index offset; other lengths are unsigned varints
+* The file is memory mapped and only read, so any number of threads may query it at once
+* @author Jake Halloran
+* @version 1.0
+**/
+public class FrontCodedShard{
+	private static final int MAGIC = 0x46435348; //"FCSH", first int of a front coded shard
+	private static final int VERSION = 1; //layout version
+	static final int BLOCK_SIZE = 64; //passwords per block written by default
+	private final MappedByteBuffer bytes; //the mapped file
+	private final int rank[]; //alphabet index of each ASCII character, -1 if not in the alphabet
+	private final int blockSize; //passwords per block
+	private final int longest; //most characters of any password, for sizing decode buffers
+	private final int count; //number of passwords
+	private final int blocks; //number of blocks
+	private final int index; //offset of the block index
+
+	/**
+	* Opens a mapped shard, checking its header and trailer
+	* @param bytes the mapped file
+	* @param fileName name of the file for error messages
+	* @param alphabet the password alphabet the shard must have been written with
+	* @throws IOException if the file is not a front coded shard of this alphabet
+	**/
+	private FrontCodedShard(MappedByteBuffer bytes, String fileName, String alphabet) throws IOException{
+		this.bytes = bytes;
+		rank = ranks(alphabet);
+		int header = headerSize(alphabet);
+		if(bytes.limit()<header+12||bytes.getInt(0)!=MAGIC||bytes.getInt(4)!=VERSION){
+			throw new IOException(fileName+" is not a front coded shard.");
+		}
+		if(bytes.getInt(16)!=alphabet.length()){
+			throw new IOException(fileName+" was written for a different password alphabet.");
+		}
+		for(int i=0;i<alphabet.length();i++){
+			if(bytes.get(20+i)!=alphabet.charAt(i)){
+				throw new IOException(fileName+" was written for a different password alphabet.");
+			}
+		}
+		int trailer = bytes.limit()-12;
+		count = bytes.getInt(trailer);
+		blocks = bytes.getInt(trailer+4);
+		index = bytes.getInt(trailer+8);
+		blockSize = bytes.getInt(8);
+		longest = bytes.getInt(12);
+		if(count<0||blockSize<1||longest<0||index<header||(long)index+4L*blocks!=trailer||blocks!=(count+(long)blockSize-1)/blockSize){
+			throw new IOException(fileName+" is truncated.");
+		}
+	}
+
+	/**
+	* Maps a front coded shard file
+	* @param fileName name of the file
+	* @param alphabet the password alphabet of the policy, which must match the one the shard was written with
+	* @return the opened shard
+	* @throws IOException if the file cannot be read or is not a front coded shard of this alphabet
+	**/
+	public static FrontCodedShard open(String fileName, String alphabet) throws IOException{
+		RandomAccessFile file = new RandomAccessFile(fileName,"r");
+		try{
+			if(file.length()>=Integer.MAX_VALUE){
+				throw new IOException(fileName+" is too large to map.");
+			}
+			return new FrontCodedShard(file.getChannel().map(FileChannel.MapMode.READ_ONLY,0,file.length()),fileName,alphabet);
+		}
+		finally{
+			file.close(); //the mapping stays valid after the file is closed
+		}
+	}
+
+	/**
+	* Compresses a text shard, one password per line in generation order, into a front coded shard
+	* @param textFile name of the text shard
+	* @param fileName name of the front coded shard to write
+	* @param alphabet the password alphabet of the policy
+	* @return the number of passwords written
+	* @throws IOException if either file cannot be used or the passwords are not in generation order
+	**/
+	public static int compress(String textFile, String fileName, String alphabet) throws IOException{
+		BufferedReader in = new BufferedReader(new FileReader(textFile),1<<16);
+		try{
+			ShardWriter out = new ShardWriter(fileName,alphabet,BLOCK_SIZE);
+			try{
+				String pass;
+				while((pass = in.readLine())!=null){
+					if(pass.length()>0){
+						out.add(pass);
+					}
+				}
+			}
+			finally{
+				out.close();
+			}
+			return out.size();
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	/**
+	* Returns the number of passwords in the shard
+	* @return the password count
+	**/
+	public int size(){
+		return count;
+	}
+
+	/**
+	* Checks whether a password is in the shard by binary searching the blocks and decoding only one of them
+	* @param password the password to look for
+	* @return true if the shard holds exactly this password
+	**/
+	public boolean contains(CharSequence password){
+		for(int i=0;i<password.length();i++){
+			char c = password.charAt(i);
+			if(c>=rank.length||rank[c]<0){
+				return false;
+			}
+		}
+
+		//Finds the last block whose first password is not after the one looked for
+		int low = 0, high = blocks-1, block = -1;
+		Cursor cursor = new Cursor();
+		while(low<=high){
+			int middle = (low+high)>>>1;
+			cursor.seek(middle);
+			int order = compare(cursor.word,cursor.length,password);
+			if(order==0){
+				return true;
+			}
+			if(order<0){
+				block = middle;
+				low = middle+1;
+			}
+			else{
+				high = middle-1;
+			}
+		}
+		if(block<0){
+			return false;
+		}
+
+		//Scans the rest of the block, stopping at the first password after the one looked for
+		cursor.seek(block);
+		while(cursor.next()){
+			int order = compare(cursor.word,cursor.length,password);
+			if(order>=0){
+				return order==0;
+			}
+		}
+		return false;
+	}
+
+	/**
+	* Returns every password in generation order, decoding one block at a time
+	* @return iterator over the passwords
+	**/
+	public Iterator<String> iterator(){
+		return new Iterator<String>(){
+			private final Cursor cursor = new Cursor(); //decoder of the current block
+			private int block = 0; //next block to start
+			private int read = 0; //passwords returned so far
+
+			public boolean hasNext(){
+				return read<count;
+			}
+
+			public String next(){
+				if(read==count){
+					throw new NoSuchElementException();
+				}
+				if(read%blockSize==0){
+					cursor.seek(block++);
+				}
+				else{
+					cursor.next();
+				}
+				read++;
+				return new String(cursor.word,0,cursor.length);
+			}
+
+			public void remove(){
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	* Builds a minimized trie of every password, each ending in the '+' valid password flag
+	* @return the trie
+	**/
+	public DlbTrie toTrie(){
+		DlbTrie trie = new DlbTrie(null,false,Math.max(count,16));
+		Iterator<String> words = iterator();
+		StringBuilder pass = new StringBuilder(longest+1);
+		while(words.hasNext()){
+			pass.setLength(0);
+			pass.append(words.next()).append('+');
+			trie.add(pass);
+		}
+		trie.minimize();
+		return trie;
+	}
+
+	/**
+	* Compares a decoded password with another in generation order
+	* @param word characters of the decoded password
+	* @param length number of characters in the decoded password
+	* @param other the password to compare with, whose characters must all be in the alphabet
+	* @return negative, zero or positive as the decoded password comes before, equals or comes after the other
+	**/
+	private int compare(char word[], int length, CharSequence other){
+		int shared = Math.min(length,other.length());
+		for(int i=0;i<shared;i++){
+			if(word[i]!=other.charAt(i)){
+				return rank[word[i]]-rank[other.charAt(i)];
+			}
+		}
+		return length-other.length();
+	}
+
+	/**
+	* Builds the lookup from characters to alphabet indices
+	* @param alphabet the password alphabet
+	* @return the alphabet index of every ASCII character, -1 for characters outside the alphabet
+	**/
+	private static int[] ranks(String alphabet){
+		int rank[] = new int[128];
+		Arrays.fill(rank,-1);
+		for(int i=0;i<alphabet.length();i++){
+			rank[alphabet.charAt(i)] = i;
+		}
+		return rank;
+	}
+
+	/**
+	* Returns the number of bytes in front of the first block
+	* @param alphabet the password alphabet stored in the header
+	* @return the header size
+	**/
+	private static int headerSize(String alphabet){
+		return 20+alphabet.length();
+	}
+
+	/**
+	* Streams passwords in generation order into a new front coded shard file
+	**/
+	public static class ShardWriter{
+		private final String fileName; //name of the file being written
+		private final int rank[]; //alphabet index of each ASCII character
+		private final int blockSize; //passwords per block
+		private final DataOutputStream out; //the file
+		private int offsets[] = new int[64]; //offset of each block started
+		private char previous[] = new char[16]; //the password written before
+		private int previousLength; //number of characters in the password written before
+		private int longest; //most characters of any password written
+		private int count; //number of passwords written
+		private boolean closed; //true once the index and trailer are written
+
+		/**
+		* Creates a shard file, writing its header
+		* @param fileName name of the file to write
+		* @param alphabet the password alphabet of the policy, every password must use only these characters
+		* @param blockSize passwords per block, a larger block is smaller on disk but slower to search
+		* @throws IOException if the file cannot be created
+		**/
+		public ShardWriter(String fileName, String alphabet, int blockSize) throws IOException{
+			this.fileName = fileName;
+			this.blockSize = Math.max(blockSize,1);
+			rank = ranks(alphabet);
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName),1<<16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(this.blockSize);
+			out.writeInt(0); //longest password, filled in by close
+			out.writeInt(alphabet.length());
+			out.writeBytes(alphabet);
+		}
+
+		/**
+		* Appends a password, which must come after every password already written
+		* @param pass the password
+		* @throws IOException if the file cannot be written, or the password is out of order or uses a character outside the alphabet
+		**/
+		public void add(CharSequence pass) throws IOException{
+			int length = pass.length();
+			int shared = 0;
+			for(int i=0;i<length;i++){
+				char c = pass.charAt(i);
+				if(c>=rank.length||rank[c]<0){
+					throw new IOException(pass+" uses a character outside the password alphabet.");
+				}
+			}
+			if(count>0){
+				while(shared<previousLength&&shared<length&&previous[shared]==pass.charAt(shared)){
+					shared++;
+				}
+				if(shared==length||(shared<previousLength&&rank[previous[shared]]>rank[pass.charAt(shared)])){
+					throw new IOException(pass+" is not after "+new String(previous,0,previousLength)+" in "+fileName+".");
+				}
+			}
+
+			//The first password of a block is stored whole so the block can be decoded on its own
+			if(count%blockSize==0){
+				if(count/blockSize==offsets.length){
+					offsets = Arrays.copyOf(offsets,offsets.length*2);
+				}
+				offsets[count/blockSize] = out.size();
+				shared = 0;
+				writeVarint(length);
+			}
+			else{
+				//Lengths of 15 or more are marked by a nibble of 15 and stored as varints after the byte
+				int suffix = length-shared;
+				out.write(Math.min(shared,15)<<4|Math.min(suffix,15));
+				if(shared>=15){
+					writeVarint(shared-15);
+				}
+				if(suffix>=15){
+					writeVarint(suffix-15);
+				}
+			}
+			for(int i=shared;i<length;i++){
+				out.write(pass.charAt(i));
+			}
+			if(out.size()<0){
+				throw new IOException(fileName+" is too large to map.");
+			}
+
+			if(length>previous.length){
+				previous = Arrays.copyOf(previous,Math.max(length,previous.length*2));
+			}
+			for(int i=shared;i<length;i++){
+				previous[i] = pass.charAt(i);
+			}
+			previousLength = length;
+			longest = Math.max(longest,length);
+			count++;
+		}
+
+		/**
+		* Returns the number of passwords written
+		* @return the password count
+		**/
+		public int size(){
+			return count;
+		}
+
+		/**
+		* Writes the block index and trailer and closes the file, closing it again does nothing
+		* @throws IOException if the file cannot be written
+		**/
+		public void close() throws IOException{
+			if(closed){
+				return;
+			}
+			closed = true;
+			try{
+				int blocks = (count+blockSize-1)/blockSize;
+				int index = out.size();
+				for(int i=0;i<blocks;i++){
+					out.writeInt(offsets[i]);
+				}
+				out.writeInt(count);
+				out.writeInt(blocks);
+				out.writeInt(index);
+			}
+			finally{
+				out.close();
+			}
+
+			//The header is written before the longest password is known
+			RandomAccessFile file = new RandomAccessFile(fileName,"rw");
+			try{
+				file.seek(12);
+				file.writeInt(longest);
+			}
+			finally{
+				file.close();
+			}
+		}
+
+		/**
+		* Writes an unsigned varint, seven bits per byte with the high bit set on every byte but the last
+		* @param value the value to write
+		* @throws IOException if the file cannot be written
+		**/
+		private void writeVarint(int value) throws IOException{
+			while(value>=0x80){
+				out.write((value&0x7f)|0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+	}
+
+	/**
+	* Decoder walking the passwords of one block, reading the mapped bytes with absolute gets
+	**/
+	private class Cursor{
+		char word[] = new char[Math.max(longest,1)]; //characters of the current password
+		int length; //number of characters in the current password
+		private int position; //offset of the next byte to decode
+		private int remaining; //passwords of the block after the current one
+
+		/**
+		* Moves to the first password of a block
+		* @param block the block number
+		**/
+		void seek(int block){
+			position = bytes.getInt(index+4*block);
+			remaining = Math.min(blockSize,count-block*blockSize)-1;
+			length = readVarint();
+			readChars(0,length);
+		}
+
+		/**
+		* Moves to the next password of the block
+		* @return false if the block has no more passwords
+		**/
+		boolean next(){
+			if(remaining==0){
+				return false;
+			}
+			remaining--;
+			int lengths = bytes.get(position++)&0xff;
+			int shared = lengths>>>4;
+			int suffix = lengths&15;
+			if(shared==15){
+				shared += readVarint();
+			}
+			if(suffix==15){
+				suffix += readVarint();
+			}
+			length = shared+suffix;
+			readChars(shared,suffix);
+			return true;
+		}
+
+		/**
+		* Reads an unsigned varint, seven bits per byte with the high bit set on every byte but the last
+		* @return the value read
+		**/
+		private int readVarint(){
+			int value = 0;
+			for(int shift=0;;shift+=7){
+				byte b = bytes.get(position++);
+				value |= (b&0x7f)<<shift;
+				if(b>=0){
+					return value;
+				}
+			}
+		}
+
+		/**
+		* Reads characters into the current password
+		* @param from first position of the password to fill
+		* @param amount number of characters to read
+		**/
+		private void readChars(int from, int amount){
+			for(int i=0;i<amount;i++){
+				word[from+i] = (char)(bytes.get(position++)&0xff);
+			}
+		}
+	}
+}
@@ -0,0 +1,541 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+* Benchmark harness for the generation and validation paths of pw_check
+* Every benchmark is run for a number of warmup iterations so the JIT has compiled it, then timed for a
+* number of measured iterations, reporting the median time per operation and the bytes allocated per
+* operation by the benchmarking thread
+* Benchmarks are repeated for every password policy and dictionary size asked for:
+*   build.pipeline     dictionary read through the DictionaryPipeline bulk build, per word
+*   dictionary.automaton  DictionaryAutomaton.holdsWord of a random password, per password
+*   generate           the exhaustive search of -g into discarded output, per valid password
+*   load.text          ShardCache.read of a text shard of the sampled valid passwords, per password
+*   load.frontCoded    ShardCache.read of the same shard front coded, per password
+*   load.snapshot      ShardCache.read of the same shard's trie snapshot, per password
+*   lookup.contains    DlbTrie.contains on a minimized trie of sampled valid passwords, per query
+*   lookup.findPrefix  DlbTrie.findPrefix on the same trie, per query
+*   suggest.nearest    the 10 nearest valid passwords to an invalid attempt, per query
+* Usage: java PasswordBenchmark [-w warmups] [-i iterations] [-n sizes] [-d dictionary] [-o results] [-b baseline] [-t percent] [policy files...]
+* where sizes is a comma separated list of dictionary word counts, 0 meaning the whole dictionary,
+* results is a file the results are written to and baseline is an earlier results file; any benchmark
+* more than percent slower than its baseline is reported and the harness exits with status 1
+* With no policy files the default policy is used
+* @author Jake Halloran
+* @version 1.0
+**/
+public class PasswordBenchmark{
+	private static final long GENERATION_LIMIT = 50000000L; //most valid passwords a policy may have for generation to be run
+	private static final int SAMPLES = 200000; //most valid passwords drawn into the lookup trie
+	private static final int QUERIES = 20000; //queries per lookup iteration
+	private static final int SUGGESTIONS = 500; //queries per suggestion iteration, each one is a full search
+	private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean(); //source of allocation counts
+	private static volatile long blackhole; //results of every benchmark are folded in here so none can be optimized away
+	private static int warmups = 3; //untimed iterations run before measuring
+	private static int iterations = 5; //timed iterations
+	private static final Map<String,Result> results = new LinkedHashMap<String,Result>(); //every result by key, in run order
+
+	/**
+	* Parses the arguments, runs every benchmark and compares against a baseline if one was given
+	* @param args the command line arguments
+	**/
+	public static void main(String args[]){
+		String dictionary = "dictionary.txt"; //word list benchmarked
+		String sizes = "100,250,0"; //dictionary word counts benchmarked
+		String output = null; //file to write the results to
+		String baseline = null; //file of earlier results to compare against
+		double tolerance = 20; //percent slower than the baseline a benchmark may be
+		List<String> policies = new ArrayList<String>(); //policy files benchmarked
+
+		try{
+			for(int i=0;i<args.length;i++){
+				if(args[i].equals("-w")&&i+1<args.length){
+					warmups = Integer.parseInt(args[++i]);
+				}
+				else if(args[i].equals("-i")&&i+1<args.length){
+					iterations = Math.max(Integer.parseInt(args[++i]),1);
+				}
+				else if(args[i].equals("-n")&&i+1<args.length){
+					sizes = args[++i];
+				}
+				else if(args[i].equals("-d")&&i+1<args.length){
+					dictionary = args[++i];
+				}
+				else if(args[i].equals("-o")&&i+1<args.length){
+					output = args[++i];
+				}
+				else if(args[i].equals("-b")&&i+1<args.length){
+					baseline = args[++i];
+				}
+				else if(args[i].equals("-t")&&i+1<args.length){
+					tolerance = Double.parseDouble(args[++i]);
+				}
+				else if(args[i].startsWith("-")){
+					System.out.println("Invalid command line arguments.");
+					return;
+				}
+				else{
+					policies.add(args[i]);
+				}
+			}
+		}
+		catch(NumberFormatException e){
+			System.out.println("Invalid command line arguments.");
+			return;
+		}
+
+		try{
+			List<String> words = readLines(dictionary);
+			System.out.printf("%-22s %-24s %7s %14s %12s%n","benchmark","policy","words","ns/op","B/op");
+			if(policies.isEmpty()){
+				benchmarkPolicy("default",PasswordPolicy.defaults(),words,sizes);
+			}
+			for(String fileName : policies){
+				benchmarkPolicy(fileName,PasswordPolicy.read(fileName),words,sizes);
+			}
+			if(output!=null){
+				writeResults(output);
+			}
+			if(baseline!=null&&!compare(baseline,tolerance)){
+				System.exit(1);
+			}
+		}
+		catch(IOException e){
+			e.printStackTrace();
+			System.exit(2);
+		}
+		catch(IllegalArgumentException e){
+			System.out.println("Invalid benchmark setup: "+e.getMessage());
+			System.exit(2);
+		}
+	}
+
+	/**
+	* Runs every benchmark of one policy at each dictionary size
+	* @param label name of the policy in the results
+	* @param policy the password policy
+	* @param words every line of the dictionary
+	* @param sizes comma separated dictionary word counts, 0 meaning every word
+	* @throws IOException if a dictionary subset cannot be written or read
+	**/
+	private static void benchmarkPolicy(String label, final PasswordPolicy policy, List<String> words, String sizes) throws IOException{
+		for(String size : sizes.split(",")){
+			int n = Integer.parseInt(size.trim());
+			if(n<=0||n>words.size()){
+				n = words.size();
+			}
+			List<String> subset = words.subList(0,n);
+			File file = File.createTempFile("benchmark",".txt");
+			file.deleteOnExit();
+			try{
+				writeLines(file,subset);
+				benchmarkDictionary(label,policy,subset,file);
+			}
+			finally{
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	* Runs every benchmark of one policy with one dictionary
+	* @param label name of the policy in the results
+	* @param policy the password policy
+	* @param words the dictionary words
+	* @param file file holding the dictionary words
+	* @throws IOException if the dictionary cannot be read
+	**/
+	private static void benchmarkDictionary(String label, final PasswordPolicy policy, final List<String> words, final File file) throws IOException{
+		final int maxLength = policy.getMaxLength();
+		int n = words.size();
+
+		run("build.pipeline",label,n,new Benchmark(){
+			long run() throws IOException{
+				blackhole += new DictionaryPipeline(policy,1<<20).build(file.getPath(),null).size();
+				return words.size();
+			}
+		});
+
+		final DlbTrie dictionary = new DictionaryPipeline(policy,1<<20).build(file.getPath(),null);
+		final DictionaryAutomaton automaton = new DictionaryAutomaton(dictionary,policy);
+		final String attempts[] = randomPasswords(policy,QUERIES,new Random(1));
+		run("dictionary.automaton",label,n,new Benchmark(){
+			long run(){
+				for(String attempt : attempts){
+					blackhole += automaton.holdsWord(attempt,0,attempt.length())?1:0;
+				}
+				return attempts.length;
+			}
+		});
+
+		//Generation is only run for policies small enough to enumerate
+		final BigInteger valid = new PasswordCounter(policy,automaton).count();
+		if(valid.compareTo(BigInteger.valueOf(GENERATION_LIMIT))<=0&&valid.signum()>0){
+			run("generate",label,n,new Benchmark(){
+				long run() throws IOException{
+					generate(dictionary,policy);
+					return valid.longValue();
+				}
+			});
+		}
+		else{
+			System.out.printf("%-22s %-24s %7d %14s%n","generate",label,n,"skipped");
+		}
+		if(valid.signum()==0){
+			return;
+		}
+
+		//The lookup trie holds a sample of the valid passwords, which are half of the queries
+		PasswordSampler sampler = new PasswordSampler(policy,automaton,new Random(2));
+		int samples = valid.min(BigInteger.valueOf(SAMPLES)).intValue();
+		final DlbTrie trie = new DlbTrie(null,false);
+		final String queries[] = randomPasswords(policy,QUERIES,new Random(3));
+		TreeSet<String> shard = new TreeSet<String>(alphabetOrder(policy)); //the order -g writes shards in
+		for(int i=0;i<samples;i++){
+			String pass = sampler.next();
+			trie.add(pass+"+");
+			shard.add(pass);
+			if(i%2==0&&i<queries.length){
+				queries[i] = pass;
+			}
+		}
+		trie.minimize();
+		benchmarkLoading(label,n,policy,new ArrayList<String>(shard));
+
+		run("lookup.contains",label,n,new Benchmark(){
+			long run(){
+				for(String query : queries){
+					blackhole += trie.contains(query)?1:0;
+				}
+				return queries.length;
+			}
+		});
+
+		run("lookup.findPrefix",label,n,new Benchmark(){
+			long run(){
+				for(String query : queries){
+					blackhole += trie.findPrefix(query,query.length());
+				}
+				return queries.length;
+			}
+		});
+
+		//Suggestions are only made for invalid attempts
+		final List<String> invalid = new ArrayList<String>();
+		for(int i=0;i<queries.length&&invalid.size()<SUGGESTIONS;i++){
+			if(!trie.contains(queries[i])){
+				invalid.add(queries[i]);
+			}
+		}
+
+		run("suggest.nearest",label,n,new Benchmark(){
+			long run(){
+				for(String attempt : invalid){
+					blackhole += trie.nearest(attempt,10,maxLength).size();
+				}
+				return invalid.size();
+			}
+		});
+	}
+
+	/**
+	* Times reading a shard into a trie the way validation does, from each of the formats -g leaves on disk
+	* Each format is written to a directory of its own, so ShardCache.read finds only that one
+	* @param label name of the policy
+	* @param n number of dictionary words
+	* @param policy the password policy
+	* @param passwords the shard's passwords, sorted and distinct
+	* @throws IOException if a shard cannot be written or read
+	**/
+	private static void benchmarkLoading(String label, int n, PasswordPolicy policy, final List<String> passwords) throws IOException{
+		final String alphabet = policy.getAlphabet();
+		File directories[] = new File[3]; //text, front coded and snapshot shards
+		try{
+			for(int i=0;i<directories.length;i++){
+				directories[i] = java.nio.file.Files.createTempDirectory("benchmark").toFile();
+			}
+			final String text = new File(directories[0],"shard.txt").getPath();
+			final String frontCoded = new File(directories[1],"shard.txt").getPath();
+			final String snapshot = new File(directories[2],"shard.txt").getPath();
+			writeLines(new File(text),passwords);
+			FrontCodedShard.compress(text,ShardCache.compressedName(frontCoded),alphabet);
+			ShardCache.load(text).writeSnapshot(ShardCache.snapshotName(snapshot),alphabet);
+
+			String names[] = {"load.text","load.frontCoded","load.snapshot"};
+			final String shards[] = {text,frontCoded,snapshot};
+			for(int i=0;i<names.length;i++){
+				final String shard = shards[i];
+				run(names[i],label,n,new Benchmark(){
+					long run() throws IOException{
+						blackhole += ShardCache.read(shard,alphabet).size();
+						return passwords.size();
+					}
+				});
+			}
+		}
+		finally{
+			for(File directory : directories){
+				if(directory!=null){
+					for(File file : directory.listFiles()){
+						file.delete();
+					}
+					directory.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	* Orders passwords the way the generator writes them, character by character in alphabet order
+	* @param policy the password policy giving the alphabet
+	* @return the comparator, for passwords using only alphabet characters
+	**/
+	private static Comparator<String> alphabetOrder(final PasswordPolicy policy){
+		return new Comparator<String>(){
+			public int compare(String a, String b){
+				for(int i=0;i<a.length()&&i<b.length();i++){
+					int order = policy.indexOf(a.charAt(i))-policy.indexOf(b.charAt(i));
+					if(order!=0){
+						return order;
+					}
+				}
+				return a.length()-b.length();
+			}
+		};
+	}
+
+	/**
+	* Runs the exhaustive search of DlbTrie.startGeneration, shard by shard, with every password written to a discarding writer
+	* and no shard files built, so the search itself is measured without the shard files on disk
+	* @param dictionary the dictionary trie
+	* @param policy the password policy
+	* @throws IOException never, the writers discard their output
+	**/
+	private static void generate(DlbTrie dictionary, PasswordPolicy policy) throws IOException{
+		DictionaryAutomaton automaton = new DictionaryAutomaton(dictionary,policy);
+		PrintWriter sink = new PrintWriter(new NullWriter());
+		StringBuilder pass = new StringBuilder(policy.getMaxLength());
+		int counts[] = new int[3];
+		for(int i=0;i<policy.alphabetSize();i++){
+			if(policy.isAllowed(i)){
+				DlbTrie.generateShard(pass,policy,automaton,i,counts,sink,null,null,null);
+			}
+		}
+		sink.close();
+	}
+
+	/**
+	* Warms up and measures one benchmark, printing and recording its result
+	* @param name name of the benchmark
+	* @param label name of the policy
+	* @param words number of dictionary words
+	* @param benchmark the benchmark to run
+	* @throws IOException if the benchmark fails
+	**/
+	private static void run(String name, String label, int words, Benchmark benchmark) throws IOException{
+		for(int i=0;i<warmups;i++){
+			benchmark.run();
+		}
+		double times[] = new double[iterations]; //nanoseconds per operation of each iteration
+		long allocated = 0, ops = 0;
+		for(int i=0;i<iterations;i++){
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			long done = benchmark.run();
+			times[i] = (double)(System.nanoTime()-start)/Math.max(done,1);
+			allocated += allocatedBytes()-bytes;
+			ops += done;
+		}
+		Arrays.sort(times);
+		Result result = new Result(name,label,words,times[iterations/2],allocatedBytes()<0?-1:(double)allocated/Math.max(ops,1));
+		results.put(result.key(),result);
+		System.out.printf("%-22s %-24s %7d %14.1f %12s%n",name,label,words,result.nanos,
+			result.bytes<0?"n/a":String.format("%.1f",result.bytes));
+	}
+
+	/**
+	* Returns the bytes allocated so far by the current thread
+	* @return the allocated bytes, or -1 if the JVM cannot count them
+	**/
+	private static long allocatedBytes(){
+		if(THREADS instanceof com.sun.management.ThreadMXBean){
+			return ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	* Builds random attempts over a policy alphabet with lengths within the policy, most of them not valid
+	* @param policy the password policy
+	* @param amount number of attempts
+	* @param random source of the characters
+	* @return the attempts
+	**/
+	private static String[] randomPasswords(PasswordPolicy policy, int amount, Random random){
+		String passwords[] = new String[amount];
+		StringBuilder pass = new StringBuilder();
+		for(int i=0;i<amount;i++){
+			pass.setLength(0);
+			int length = policy.getMinLength()+random.nextInt(policy.getMaxLength()-policy.getMinLength()+1);
+			for(int j=0;j<length;j++){
+				pass.append(policy.charAt(random.nextInt(policy.alphabetSize())));
+			}
+			passwords[i] = pass.toString();
+		}
+		return passwords;
+	}
+
+	/**
+	* Writes every result as a tab separated line of benchmark, policy, words, ns/op and B/op
+	* @param fileName the results file
+	* @throws IOException if the file cannot be written
+	**/
+	private static void writeResults(String fileName) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+		try{
+			for(Result result : results.values()){
+				out.println(result.name+"\t"+result.label+"\t"+result.words+"\t"+result.nanos+"\t"+result.bytes);
+			}
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	/**
+	* Compares the results against a baseline results file, printing every benchmark that got slower
+	* @param fileName the baseline results file
+	* @param tolerance percent slower than the baseline a benchmark may be
+	* @return true if no benchmark is more than tolerance percent slower
+	* @throws IOException if the baseline cannot be read
+	**/
+	private static boolean compare(String fileName, double tolerance) throws IOException{
+		boolean passed = true;
+		for(String line : readLines(fileName)){
+			String fields[] = line.split("\t");
+			if(fields.length<5){
+				continue;
+			}
+			Result result = results.get(fields[0]+"\t"+fields[1]+"\t"+fields[2]);
+			double before = Double.parseDouble(fields[3]);
+			if(result!=null&&result.nanos>before*(1+tolerance/100)){
+				System.out.printf("REGRESSION %s %s %s: %.1f ns/op, baseline %.1f ns/op (+%.0f%%)%n",
+					fields[0],fields[1],fields[2],result.nanos,before,(result.nanos/before-1)*100);
+				passed = false;
+			}
+		}
+		if(passed){
+			System.out.println("No benchmark is more than "+tolerance+"% slower than "+fileName+".");
+		}
+		return passed;
+	}
+
+	/**
+	* Reads every line of a file
+	* @param fileName the file
+	* @return its lines
+	* @throws IOException if the file cannot be read
+	**/
+	private static List<String> readLines(String fileName) throws IOException{
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try{
+			String line;
+			while((line = in.readLine())!=null){
+				lines.add(line);
+			}
+		}
+		finally{
+			in.close();
+		}
+		return lines;
+	}
+
+	/**
+	* Writes lines to a file
+	* @param file the file
+	* @param lines the lines to write
+	* @throws IOException if the file cannot be written
+	**/
+	private static void writeLines(File file, List<String> lines) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		try{
+			for(String line : lines){
+				out.println(line);
+			}
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	/**
+	* One benchmarked operation, run once per iteration
+	**/
+	private abstract static class Benchmark{
+		/**
+		* Runs one iteration
+		* @return the number of operations the iteration performed
+		* @throws IOException if the benchmarked code fails
+		**/
+		abstract long run() throws IOException;
+	}
+
+	/**
+	* Measured time and allocation of one benchmark
+	**/
+	private static class Result{
+		final String name; //benchmark name
+		final String label; //policy name
+		final int words; //dictionary words
+		final double nanos; //median nanoseconds per operation
+		final double bytes; //bytes allocated per operation, -1 if unknown
+
+		/**
+		* Creates a result
+		* @param name benchmark name
+		* @param label policy name
+		* @param words dictionary words
+		* @param nanos median nanoseconds per operation
+		* @param bytes bytes allocated per operation, -1 if unknown
+		**/
+		Result(String name, String label, int words, double nanos, double bytes){
+			this.name = name;
+			this.label = label;
+			this.words = words;
+			this.nanos = nanos;
+			this.bytes = bytes;
+		}
+
+		/**
+		* Returns the key matching a result to its baseline
+		* @return benchmark, policy and words separated by tabs
+		**/
+		String key(){
+			return name+"\t"+label+"\t"+words;
+		}
+	}
+
+	/**
+	* Writer that discards everything written to it
+	**/
+	private static class NullWriter extends Writer{
+		public void write(char buffer[], int offset, int length){
+		}
+
+		public void flush(){
+		}
+
+		public void close(){
+		}
+	}
+}
@@ -0,0 +1,168 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+* Memory mapped bitset holding one bit for every possible password
+* A password is numbered by reading it as a base alphabetSize number whose digits are the policy alphabet
+* indices of its characters, so checking a password is a single bit lookup
+* @author Jake Halloran
+* @version 1.0
+**/
+public class PasswordBitset{
+	private final int length; //number of characters in every password
+	private final int alphabetSize; //number of characters a password can be built from
+	private final PasswordPolicy policy; //policy whose alphabet numbers the passwords
+	private final boolean aligned; //true if every first character owns a whole number of bytes
+	private final MappedByteBuffer bits; //the mapped bitset file
+
+	/**
+	* Opens or creates a bitset file
+	* @param fileName the name of the bitset file
+	* @param policy password policy giving the length and alphabet, its passwords must all be the same length
+	* @param create true to create an empty writable bitset, replacing any existing file, false to map an existing one read only
+	* @throws IOException if the file cannot be created, or an existing file is not the right size
+	**/
+	public PasswordBitset(String fileName, PasswordPolicy policy, boolean create) throws IOException{
+		this(fileName,policy,create,create);
+	}
+
+	/**
+	* Opens or creates a bitset file, an existing file may be mapped writable to update it in place
+	* @param fileName the name of the bitset file
+	* @param policy password policy giving the length and alphabet, its passwords must all be the same length
+	* @param create true to create an empty bitset, replacing any existing file
+	* @param writable true to map the file so passwords can be added and removed, always true when creating
+	* @throws IOException if the file cannot be created, or an existing file is not the right size
+	**/
+	public PasswordBitset(String fileName, PasswordPolicy policy, boolean create, boolean writable) throws IOException{
+		if(!policy.fitsBitset()){
+			throw new IllegalArgumentException("Password space is too large for a bitset.");
+		}
+		this.policy = policy;
+		length = policy.getMaxLength();
+		alphabetSize = policy.alphabetSize();
+		aligned = slots(length-1,alphabetSize)%8==0;
+		long numBytes = (slots(length,alphabetSize)+7)/8;
+
+		writable |= create;
+		RandomAccessFile file = new RandomAccessFile(fileName,writable?"rw":"r");
+		try{
+			if(create){
+				//Truncating first makes sure every bit starts cleared
+				file.setLength(0);
+				file.setLength(numBytes);
+			}
+			else if(file.length()!=numBytes){
+				throw new IOException(fileName+" does not match the password length and alphabet.");
+			}
+			bits = file.getChannel().map(writable?FileChannel.MapMode.READ_WRITE:FileChannel.MapMode.READ_ONLY,0,numBytes);
+		}
+		finally{
+			file.close(); //the mapping stays valid after the file is closed
+		}
+	}
+
+	/**
+	* Returns the number of possible passwords, which is the number of bits in the set
+	* @param length number of characters in every password
+	* @param alphabetSize number of characters a password can be built from
+	* @return alphabetSize to the power of length
+	**/
+	static long slots(int length, int alphabetSize){
+		long slots = 1;
+		for(int i=0;i<length;i++){
+			if(slots>Long.MAX_VALUE/alphabetSize){
+				return Long.MAX_VALUE;
+			}
+			slots *= alphabetSize;
+		}
+		return slots;
+	}
+
+	/**
+	* Returns the bit number of a password
+	* @param pass the password
+	* @return the password's index or -1 if it is the wrong length or uses a character outside of the alphabet
+	**/
+	private long index(CharSequence pass){
+		if(pass.length()!=length){
+			return -1;
+		}
+		long index = 0;
+		for(int i=0;i<length;i++){
+			int digit = policy.indexOf(pass.charAt(i));
+			if(digit<0){
+				return -1;
+			}
+			index = index*alphabetSize+digit;
+		}
+		return index;
+	}
+
+	/**
+	* Marks a password as valid
+	* When each first character owns a whole number of bytes (such as 5 character passwords over 42 characters)
+	* generation threads can each add their own shard without locking, otherwise neighbouring shards share
+	* a byte and every add locks the bitset
+	* @param pass the valid password
+	**/
+	public void add(CharSequence pass){
+		long index = index(pass);
+		if(index<0){
+			throw new IllegalArgumentException(pass+" cannot be stored in the bitset.");
+		}
+		if(aligned){
+			set(index);
+		}
+		else{
+			synchronized(this){
+				set(index);
+			}
+		}
+	}
+
+	/**
+	* Marks a password as no longer valid, used when a dictionary update forbids it
+	* @param pass the password to remove, passwords that cannot be stored in the bitset are ignored
+	**/
+	public void remove(CharSequence pass){
+		long index = index(pass);
+		if(index<0){
+			return;
+		}
+		int position = (int)(index>>>3);
+		synchronized(this){
+			bits.put(position,(byte)(bits.get(position)&~(1<<(index&7))));
+		}
+	}
+
+	/**
+	* Sets one bit of the mapped file
+	* @param index the bit to set
+	**/
+	private void set(long index){
+		int position = (int)(index>>>3);
+		bits.put(position,(byte)(bits.get(position)|(1<<(index&7))));
+	}
+
+	/**
+	* Checks whether a password was marked valid
+	* @param pass the password to look up
+	* @return true if the password is in the set
+	**/
+	public boolean contains(CharSequence pass){
+		long index = index(pass);
+		if(index<0){
+			return false;
+		}
+		return (bits.get((int)(index>>>3))&(1<<(index&7)))!=0;
+	}
+
+	/**
+	* Writes any changes made to a writable bitset back to the file
+	**/
+	public void force(){
+		bits.force();
+	}
+}
@@ -0,0 +1,80 @@
+import java.math.BigInteger;
+
+/**
+* Counts the valid passwords of a policy without generating them
+* Whether a prefix can be finished into valid passwords depends only on the dictionary automaton state it
+* reaches and on how many letters, digits and symbols it holds (its length being their sum), so the number
+* of valid passwords starting with any prefix is memoized per (state, letters, digits, symbols) and the
+* whole count takes time polynomial in the password length instead of exponential
+* @author Jake Halloran
+* @version 1.0
+**/
+public class PasswordCounter{
+	private final PasswordPolicy policy; //policy every counted password follows
+	private final DictionaryAutomaton automaton; //dictionary automaton used to throw out prefixes holding a word
+	private final int letters; //number of letter counts a prefix can have
+	private final int digits; //number of digit counts a prefix can have
+	private final int symbols; //number of symbol counts a prefix can have
+	private final BigInteger memo[]; //passwords starting with a prefix in each state and class counts, null until counted
+
+	/**
+	* Creates a counter, no counting is done until a count is asked for
+	* @param policy password policy giving the length, alphabet and character class limits
+	* @param automaton dictionary automaton built for the same policy
+	* @throws IllegalArgumentException if the memo table would be too large to allocate
+	**/
+	public PasswordCounter(PasswordPolicy policy, DictionaryAutomaton automaton){
+		this.policy = policy;
+		this.automaton = automaton;
+		letters = policy.getMaxCount(PasswordPolicy.LETTER)+1;
+		digits = policy.getMaxCount(PasswordPolicy.DIGIT)+1;
+		symbols = policy.getMaxCount(PasswordPolicy.SYMBOL)+1;
+		long entries = (long)automaton.size()*letters*digits*symbols;
+		if(entries>Integer.MAX_VALUE-8){
+			throw new IllegalArgumentException("Too many automaton states and class counts to count passwords.");
+		}
+		memo = new BigInteger[(int)entries];
+	}
+
+	/**
+	* Returns the number of valid passwords, the number of lines -g would write to good_passwords.txt
+	* @return the password count
+	**/
+	public BigInteger count(){
+		return count(automaton.start(),new int[3],0);
+	}
+
+	/**
+	* Returns the number of valid passwords starting with a prefix, counting the prefix itself if it is valid
+	* The prefix must already be known to hold no dictionary word and to pass policy.canFinish
+	* @param state automaton state reached after reading the prefix
+	* @param counts letters, digits and symbols in the prefix, indexed by class, restored before returning
+	* @param length number of characters in the prefix
+	* @return the number of valid passwords starting with the prefix
+	**/
+	public BigInteger count(int state, int counts[], int length){
+		int slot = ((state*letters+counts[PasswordPolicy.LETTER])*digits+counts[PasswordPolicy.DIGIT])*symbols+counts[PasswordPolicy.SYMBOL];
+		if(memo[slot]!=null){
+			return memo[slot];
+		}
+
+		//The prefix itself, then every character that keeps it free of words and within the policy
+		BigInteger total = policy.isComplete(counts,length)?BigInteger.ONE:BigInteger.ZERO;
+		if(length<policy.getMaxLength()){
+			for(int i=0;i<policy.alphabetSize();i++){
+				int nextState = automaton.next(state,i);
+				if(!policy.isAllowed(i)||automaton.isWordEnd(nextState)){
+					continue;
+				}
+				int type = policy.classOf(i);
+				counts[type]++;
+				if(policy.canFinish(counts,length+1)){
+					total = total.add(count(nextState,counts,length+1));
+				}
+				counts[type]--;
+			}
+		}
+		memo[slot] = total;
+		return total;
+	}
+}
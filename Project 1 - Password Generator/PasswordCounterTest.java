@@ -0,0 +1,93 @@
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+* Checks that counting and sampling agree with enumerating a small password space by brute force
+* Every string of a small alphabet is tried against the policy and the dictionary words, then the counter must give
+* the same total, ranking must give the same passwords in the same order, and random draws must all be valid
+* Usage: java PasswordCounterTest, exits with status 1 if a check fails
+* @author Jake Halloran
+* @version 1.0
+**/
+public class PasswordCounterTest{
+	private static final String ALPHABET = "0123bcd!@"; //small alphabet so every string can be tried
+	private static final String WORDS[] = {"2!","bc","d0d","zz"}; //sorted dictionary, "zz" is outside the alphabet
+	private static final int DRAWS = 1000; //random passwords drawn
+
+	/**
+	* Runs the checks
+	* @param args unused
+	**/
+	public static void main(String args[]){
+		PasswordPolicy policy = new PasswordPolicy(3,5,ALPHABET,"3",new int[]{1,1,1},new int[]{3,2,2});
+		DlbTrie dictionary = new DlbTrie(null,Arrays.asList(WORDS).iterator(),'^');
+		DictionaryAutomaton automaton = new DictionaryAutomaton(dictionary,policy);
+		boolean passed = true;
+
+		List<String> passwords = new ArrayList<String>();
+		enumerate(policy,new StringBuilder(),passwords);
+		BigInteger count = new PasswordCounter(policy,automaton).count();
+		passed &= expect(count.equals(BigInteger.valueOf(passwords.size())),"counted "+count+" passwords, there are "+passwords.size());
+
+		//Ranks follow the order -g writes passwords in, so unranking them all lists the space in order
+		PasswordSampler sampler = new PasswordSampler(policy,automaton,new Random(1));
+		passed &= expect(sampler.size().equals(count),"sampler draws from "+sampler.size()+" passwords, the counter found "+count);
+		for(int rank=0;rank<passwords.size()&&passed;rank++){
+			String pass = sampler.unrank(BigInteger.valueOf(rank));
+			passed &= expect(pass.equals(passwords.get(rank)),"rank "+rank+" is "+pass+", expected "+passwords.get(rank));
+		}
+		Set<String> valid = new HashSet<String>(passwords);
+		for(int i=0;i<DRAWS&&passed;i++){
+			String pass = sampler.next();
+			passed &= expect(valid.contains(pass),"drew "+pass+", which is not a valid password");
+		}
+		System.out.println(passed?"ok "+count+" passwords counted, ranked and drawn":"FAIL");
+		System.exit(passed?0:1);
+	}
+
+	/**
+	* Lists every valid password starting with a prefix, in alphabet order with prefixes first
+	* @param policy the password policy
+	* @param pass the prefix, restored before returning
+	* @param passwords receives the strings the policy accepts that hold no dictionary word
+	**/
+	private static void enumerate(PasswordPolicy policy, StringBuilder pass, List<String> passwords){
+		if(policy.accepts(pass)&&!holdsWord(pass.toString())){
+			passwords.add(pass.toString());
+		}
+		if(pass.length()<policy.getMaxLength()){
+			for(int i=0;i<policy.alphabetSize();i++){
+				pass.append(policy.charAt(i));
+				enumerate(policy,pass,passwords);
+				pass.setLength(pass.length()-1);
+			}
+		}
+	}
+
+	/**
+	* Checks whether a string holds a dictionary word anywhere
+	* @param pass the string
+	* @return true if some word is a substring of it
+	**/
+	private static boolean holdsWord(String pass){
+		for(String word : WORDS){
+			if(pass.contains(word)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	* Reports a failed check
+	* @param condition the result of the check
+	* @param failure what went wrong, printed if the check failed
+	* @return the condition
+	**/
+	private static boolean expect(boolean condition, String failure){
+		if(!condition){
+			System.out.println("FAIL "+failure);
+		}
+		return condition;
+	}
+}
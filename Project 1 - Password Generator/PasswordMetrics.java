@@ -0,0 +1,505 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+* Counters, timers and trie statistics of password generation and validation
+* The generator counts into a Search owned by one thread and merges it once its subtree is done, so the
+* recursive search only ever increments plain arrays; everything else is recorded straight into atomics
+* and may be recorded from any number of threads
+* The metrics can be written as JSON or read over JMX once registered
+* @author Jake Halloran
+* @version 1.0
+**/
+public class PasswordMetrics implements PasswordMetricsMBean{
+	static final int DEPTHS = 64; //prefix lengths counted on their own, longer ones share the last slot
+	private static final int FAN_OUT = 64; //fan outs counted on their own, larger ones share the last slot
+	private final AtomicLong generationNanos = new AtomicLong(); //time spent generating
+	private final AtomicLong passwords = new AtomicLong(); //valid passwords generated
+	private final AtomicLongArray visited = new AtomicLongArray(DEPTHS+1); //prefixes extended, by length
+	private final AtomicLongArray prunedWord = new AtomicLongArray(DEPTHS+1); //characters finishing a dictionary word, by prefix length
+	private final AtomicLongArray prunedPolicy = new AtomicLongArray(DEPTHS+1); //characters breaking the class limits, by prefix length
+	private volatile long dictionaryNodes; //nodes of the last dictionary trie recorded
+	private volatile long fanOut[] = new long[0]; //dictionary nodes by number of children
+	private final AtomicLong shardLoads = new AtomicLong(); //shard tries read
+	private final AtomicLong shardLoadNanos = new AtomicLong(); //time spent reading shard tries
+	private final AtomicLong shardLoadMax = new AtomicLong(); //slowest shard read
+	private final AtomicLong shardNodes = new AtomicLong(); //nodes of every shard trie read
+	private final AtomicLong cacheHits = new AtomicLong(); //shard lookups answered from a loaded trie
+	private final AtomicLong cacheMisses = new AtomicLong(); //shard lookups that had to read the shard
+	private final AtomicLong cacheEvictions = new AtomicLong(); //loaded shard tries dropped to stay under the cache budget
+	private final AtomicLong compressedLookups = new AtomicLong(); //shard lookups answered from a front coded shard
+	private final AtomicLong validQueries = new AtomicLong(); //checked passwords that were valid
+	private final Latency queryLatency = new Latency(); //time to answer each password check
+
+	/**
+	* Registers the metrics with the platform MBean server so JMX clients such as jconsole can read them
+	* @param name object name to register under, such as "pw_check:type=PasswordMetrics"
+	* @throws JMException if the name is malformed or already taken
+	**/
+	public void register(String name) throws JMException{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this,new ObjectName(name));
+	}
+
+	/**
+	* Creates the counters for one thread's part of a password search
+	* @return an empty search
+	**/
+	public Search newSearch(){
+		return new Search();
+	}
+
+	/**
+	* Adds the counts of a finished search
+	* @param search the search, which must not be used again
+	**/
+	public void record(Search search){
+		passwords.addAndGet(search.passwords);
+		for(int i=0;i<=DEPTHS;i++){
+			if(search.visited[i]!=0){
+				visited.addAndGet(i,search.visited[i]);
+			}
+			if(search.prunedWord[i]!=0){
+				prunedWord.addAndGet(i,search.prunedWord[i]);
+			}
+			if(search.prunedPolicy[i]!=0){
+				prunedPolicy.addAndGet(i,search.prunedPolicy[i]);
+			}
+		}
+	}
+
+	/**
+	* Adds the time of a whole generation
+	* @param nanos nanoseconds it took
+	**/
+	public void recordGeneration(long nanos){
+		generationNanos.addAndGet(nanos);
+	}
+
+	/**
+	* Records the node count and fan out histogram of a dictionary trie
+	* @param dictionary the dictionary trie
+	**/
+	public void recordDictionary(DlbTrie dictionary){
+		long histogram[] = new long[FAN_OUT+1];
+		dictionaryNodes = dictionary.countNodes(histogram);
+		fanOut = histogram;
+	}
+
+	/**
+	* Records one shard trie read from disk
+	* @param nanos nanoseconds the read took
+	* @param nodes nodes in the trie read
+	**/
+	public void recordShardLoad(long nanos, int nodes){
+		shardLoads.incrementAndGet();
+		shardLoadNanos.addAndGet(nanos);
+		shardNodes.addAndGet(nodes);
+		long max;
+		while(nanos>(max = shardLoadMax.get())&&!shardLoadMax.compareAndSet(max,nanos));
+	}
+
+	/**
+	* Records one shard cache lookup
+	* @param hit true if the shard was already loaded, false if it had to be read
+	**/
+	public void recordCacheLookup(boolean hit){
+		(hit?cacheHits:cacheMisses).incrementAndGet();
+	}
+
+	/**
+	* Records one shard cache lookup answered by searching a front coded shard in place, without loading its trie
+	**/
+	public void recordCompressedLookup(){
+		compressedLookups.incrementAndGet();
+	}
+
+	/**
+	* Records one loaded shard dropped from the shard cache
+	**/
+	public void recordCacheEviction(){
+		cacheEvictions.incrementAndGet();
+	}
+
+	/**
+	* Records one answered password check
+	* @param nanos nanoseconds from reading the password to having the answer
+	* @param valid true if the password was valid
+	**/
+	public void recordQuery(long nanos, boolean valid){
+		queryLatency.record(nanos);
+		if(valid){
+			validQueries.incrementAndGet();
+		}
+	}
+
+	/**
+	* Returns the nanoseconds spent generating passwords
+	* @return the generation time
+	**/
+	public long getGenerationNanos(){
+		return generationNanos.get();
+	}
+
+	/**
+	* Returns the number of valid passwords generated
+	* @return the password count
+	**/
+	public long getPasswordsGenerated(){
+		return passwords.get();
+	}
+
+	/**
+	* Returns the number of password prefixes the generator extended
+	* @return the visited prefix count
+	**/
+	public long getNodesVisited(){
+		return sum(visited);
+	}
+
+	/**
+	* Returns the characters skipped for finishing a dictionary word, by prefix length
+	* @return the prunes at each length
+	**/
+	public long[] getPrunedByDictionary(){
+		return toArray(prunedWord);
+	}
+
+	/**
+	* Returns the characters skipped for breaking the class limits, by prefix length
+	* @return the prunes at each length
+	**/
+	public long[] getPrunedByPolicy(){
+		return toArray(prunedPolicy);
+	}
+
+	/**
+	* Returns the number of nodes in the last dictionary trie recorded
+	* @return the node count
+	**/
+	public long getDictionaryNodes(){
+		return dictionaryNodes;
+	}
+
+	/**
+	* Returns how many dictionary nodes have each number of children
+	* @return the fan out histogram, the last entry counting every larger fan out
+	**/
+	public long[] getDictionaryFanOut(){
+		return trim(fanOut.clone());
+	}
+
+	/**
+	* Returns the number of shard tries read from disk
+	* @return the shard load count
+	**/
+	public long getShardLoads(){
+		return shardLoads.get();
+	}
+
+	/**
+	* Returns the nanoseconds spent reading shard tries
+	* @return the total shard load time
+	**/
+	public long getShardLoadNanos(){
+		return shardLoadNanos.get();
+	}
+
+	/**
+	* Returns the number of shard cache lookups answered from a loaded trie
+	* @return the hit count
+	**/
+	public long getShardCacheHits(){
+		return cacheHits.get();
+	}
+
+	/**
+	* Returns the number of shard cache lookups that had to read the shard
+	* @return the miss count
+	**/
+	public long getShardCacheMisses(){
+		return cacheMisses.get();
+	}
+
+	/**
+	* Returns the number of loaded shards the shard cache dropped to stay under its budget
+	* @return the eviction count
+	**/
+	public long getShardCacheEvictions(){
+		return cacheEvictions.get();
+	}
+
+	/**
+	* Returns the number of shard cache lookups answered from a front coded shard without loading its trie
+	* @return the front coded lookup count
+	**/
+	public long getShardCompressedLookups(){
+		return compressedLookups.get();
+	}
+
+	/**
+	* Returns the number of passwords checked
+	* @return the query count
+	**/
+	public long getQueries(){
+		return queryLatency.count();
+	}
+
+	/**
+	* Returns the number of checked passwords that were valid
+	* @return the valid query count
+	**/
+	public long getValidQueries(){
+		return validQueries.get();
+	}
+
+	/**
+	* Returns the median time to answer a password check
+	* @return the latency in nanoseconds
+	**/
+	public long getQueryLatencyP50(){
+		return queryLatency.percentile(0.5);
+	}
+
+	/**
+	* Returns the 90th percentile time to answer a password check
+	* @return the latency in nanoseconds
+	**/
+	public long getQueryLatencyP90(){
+		return queryLatency.percentile(0.9);
+	}
+
+	/**
+	* Returns the 99th percentile time to answer a password check
+	* @return the latency in nanoseconds
+	**/
+	public long getQueryLatencyP99(){
+		return queryLatency.percentile(0.99);
+	}
+
+	/**
+	* Returns the 99.9th percentile time to answer a password check
+	* @return the latency in nanoseconds
+	**/
+	public long getQueryLatencyP999(){
+		return queryLatency.percentile(0.999);
+	}
+
+	/**
+	* Returns every metric as a single line JSON object, per length arrays are indexed by prefix length
+	* @return the JSON text
+	**/
+	public String toJson(){
+		StringBuilder json = new StringBuilder(512);
+		json.append("{\"generation\":{\"nanos\":").append(getGenerationNanos());
+		json.append(",\"passwords\":").append(getPasswordsGenerated());
+		json.append(",\"nodesVisited\":").append(getNodesVisited());
+		append(json.append(",\"visitedPerLength\":"),toArray(visited));
+		append(json.append(",\"prunedByDictionaryPerLength\":"),getPrunedByDictionary());
+		append(json.append(",\"prunedByPolicyPerLength\":"),getPrunedByPolicy());
+		json.append("},\"dictionary\":{\"nodes\":").append(getDictionaryNodes());
+		append(json.append(",\"fanOut\":"),getDictionaryFanOut());
+		json.append("},\"shards\":{\"loads\":").append(getShardLoads());
+		json.append(",\"loadNanos\":").append(getShardLoadNanos());
+		json.append(",\"maxLoadNanos\":").append(shardLoadMax.get());
+		json.append(",\"nodes\":").append(shardNodes.get());
+		json.append(",\"cacheHits\":").append(getShardCacheHits());
+		json.append(",\"cacheMisses\":").append(getShardCacheMisses());
+		json.append(",\"cacheEvictions\":").append(getShardCacheEvictions());
+		json.append(",\"compressedLookups\":").append(getShardCompressedLookups());
+		json.append("},\"queries\":{\"count\":").append(getQueries());
+		json.append(",\"valid\":").append(getValidQueries());
+		json.append(",\"latencyNanos\":{\"p50\":").append(getQueryLatencyP50());
+		json.append(",\"p90\":").append(getQueryLatencyP90());
+		json.append(",\"p99\":").append(getQueryLatencyP99());
+		json.append(",\"p999\":").append(getQueryLatencyP999());
+		json.append(",\"max\":").append(queryLatency.max());
+		json.append("}}}");
+		return json.toString();
+	}
+
+	/**
+	* Writes the metrics as JSON to a file
+	* @param fileName the file to write
+	* @throws IOException if the file cannot be written
+	**/
+	public void writeJson(String fileName) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+		try{
+			out.println(toJson());
+		}
+		finally{
+			out.close();
+		}
+		if(out.checkError()){
+			throw new IOException("Error writing "+fileName+".");
+		}
+	}
+
+	/**
+	* Appends an array as a JSON array
+	* @param json the JSON being built
+	* @param values the values
+	**/
+	private static void append(StringBuilder json, long values[]){
+		json.append('[');
+		for(int i=0;i<values.length;i++){
+			if(i>0){
+				json.append(',');
+			}
+			json.append(values[i]);
+		}
+		json.append(']');
+	}
+
+	/**
+	* Copies a counter array, dropping the unused slots at its end
+	* @param counters the counters
+	* @return the counts up to the last one that is not zero
+	**/
+	private static long[] toArray(AtomicLongArray counters){
+		long values[] = new long[counters.length()];
+		for(int i=0;i<values.length;i++){
+			values[i] = counters.get(i);
+		}
+		return trim(values);
+	}
+
+	/**
+	* Drops the zeros at the end of an array
+	* @param values the array
+	* @return the array up to its last value that is not zero
+	**/
+	private static long[] trim(long values[]){
+		int length = values.length;
+		while(length>0&&values[length-1]==0){
+			length--;
+		}
+		return Arrays.copyOf(values,length);
+	}
+
+	/**
+	* Adds up a counter array
+	* @param counters the counters
+	* @return their sum
+	**/
+	private static long sum(AtomicLongArray counters){
+		long total = 0;
+		for(int i=0;i<counters.length();i++){
+			total += counters.get(i);
+		}
+		return total;
+	}
+
+	/**
+	* Counters of one thread's part of a password search, indexed by the length of the prefix being extended
+	* Lengths past DEPTHS are counted in the last slot
+	**/
+	public static class Search{
+		final long visited[] = new long[DEPTHS+1]; //prefixes extended
+		final long prunedWord[] = new long[DEPTHS+1]; //characters skipped for finishing a dictionary word
+		final long prunedPolicy[] = new long[DEPTHS+1]; //characters skipped for breaking the class limits
+		long passwords; //valid passwords found
+
+		/**
+		* Returns the slot counting a prefix length
+		* @param length the prefix length
+		* @return the slot
+		**/
+		static int slot(int length){
+			return Math.min(length,DEPTHS);
+		}
+	}
+
+	/**
+	* Log linear latency histogram: values under 16 get a bucket each, and every power of two above that is
+	* split into 8 buckets, so a percentile is reported within 12.5% of the true value in a fixed 496 buckets
+	**/
+	static class Latency{
+		private final AtomicLongArray buckets = new AtomicLongArray(16+8*60); //counts of each bucket
+		private final AtomicLong count = new AtomicLong(); //values recorded
+		private final AtomicLong max = new AtomicLong(); //largest value recorded
+
+		/**
+		* Records a value
+		* @param nanos the value, negative values are counted as 0
+		**/
+		void record(long nanos){
+			nanos = Math.max(nanos,0);
+			buckets.incrementAndGet(bucket(nanos));
+			count.incrementAndGet();
+			long largest;
+			while(nanos>(largest = max.get())&&!max.compareAndSet(largest,nanos));
+		}
+
+		/**
+		* Returns the bucket holding a value
+		* @param value the value, at least 0
+		* @return the bucket index
+		**/
+		static int bucket(long value){
+			if(value<16){
+				return (int)value;
+			}
+			int exponent = 63-Long.numberOfLeadingZeros(value); //at least 4
+			return Math.min(16+(exponent-4)*8+(int)((value>>>(exponent-3))&7),16+8*60-1);
+		}
+
+		/**
+		* Returns the largest value a bucket holds
+		* @param bucket the bucket index
+		* @return its upper bound
+		**/
+		static long upperBound(int bucket){
+			if(bucket<16){
+				return bucket;
+			}
+			int exponent = (bucket-16)/8+4;
+			long low = (8L+(bucket-16)%8)<<(exponent-3);
+			return low+(1L<<(exponent-3))-1;
+		}
+
+		/**
+		* Returns the number of values recorded
+		* @return the count
+		**/
+		long count(){
+			return count.get();
+		}
+
+		/**
+		* Returns the largest value recorded
+		* @return the maximum, 0 if nothing was recorded
+		**/
+		long max(){
+			return max.get();
+		}
+
+		/**
+		* Returns an upper bound on a percentile of the values recorded
+		* @param fraction the percentile as a fraction, such as 0.99
+		* @return the upper bound of the bucket holding the percentile, 0 if nothing was recorded
+		**/
+		long percentile(double fraction){
+			long total = count.get();
+			if(total==0){
+				return 0;
+			}
+			long rank = (long)Math.ceil(fraction*total);
+			long seen = 0;
+			for(int i=0;i<buckets.length();i++){
+				seen += buckets.get(i);
+				if(seen>=rank){
+					return Math.min(upperBound(i),max.get());
+				}
+			}
+			return max.get();
+		}
+	}
+}
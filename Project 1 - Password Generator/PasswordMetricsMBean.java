@@ -0,0 +1,126 @@
+/**
+* Management interface of PasswordMetrics, exposing the generation and validation counters over JMX
+* @author Jake Halloran
+* @version 1.0
+**/
+public interface PasswordMetricsMBean{
+	/**
+	* Returns the nanoseconds spent generating passwords
+	* @return the generation time
+	**/
+	long getGenerationNanos();
+
+	/**
+	* Returns the number of valid passwords generated
+	* @return the password count
+	**/
+	long getPasswordsGenerated();
+
+	/**
+	* Returns the number of password prefixes the generator extended
+	* @return the visited prefix count
+	**/
+	long getNodesVisited();
+
+	/**
+	* Returns the number of characters the generator skipped because they finished a dictionary word, by prefix length
+	* @return the prunes at each length
+	**/
+	long[] getPrunedByDictionary();
+
+	/**
+	* Returns the number of characters the generator skipped because of the policy class limits, by prefix length
+	* @return the prunes at each length
+	**/
+	long[] getPrunedByPolicy();
+
+	/**
+	* Returns the number of nodes in the last dictionary trie recorded
+	* @return the node count
+	**/
+	long getDictionaryNodes();
+
+	/**
+	* Returns how many dictionary trie nodes have each number of children, the last entry counting every larger fan out
+	* @return the fan out histogram
+	**/
+	long[] getDictionaryFanOut();
+
+	/**
+	* Returns the number of shard tries read from disk
+	* @return the shard load count
+	**/
+	long getShardLoads();
+
+	/**
+	* Returns the nanoseconds spent reading shard tries
+	* @return the total shard load time
+	**/
+	long getShardLoadNanos();
+
+	/**
+	* Returns the number of shard cache lookups answered from a loaded trie
+	* @return the hit count
+	**/
+	long getShardCacheHits();
+
+	/**
+	* Returns the number of shard cache lookups that had to read the shard
+	* @return the miss count
+	**/
+	long getShardCacheMisses();
+
+	/**
+	* Returns the number of loaded shards the shard cache dropped to stay under its budget
+	* @return the eviction count
+	**/
+	long getShardCacheEvictions();
+
+	/**
+	* Returns the number of shard cache lookups answered from a front coded shard without loading its trie
+	* @return the front coded lookup count
+	**/
+	long getShardCompressedLookups();
+
+	/**
+	* Returns the number of passwords checked
+	* @return the query count
+	**/
+	long getQueries();
+
+	/**
+	* Returns the number of checked passwords that were valid
+	* @return the valid query count
+	**/
+	long getValidQueries();
+
+	/**
+	* Returns the median time to answer a password check
+	* @return the 50th percentile latency in nanoseconds
+	**/
+	long getQueryLatencyP50();
+
+	/**
+	* Returns the 90th percentile time to answer a password check
+	* @return the latency in nanoseconds
+	**/
+	long getQueryLatencyP90();
+
+	/**
+	* Returns the 99th percentile time to answer a password check
+	* @return the latency in nanoseconds
+	**/
+	long getQueryLatencyP99();
+
+	/**
+	* Returns the 99.9th percentile time to answer a password check
+	* @return the latency in nanoseconds
+	**/
+	long getQueryLatencyP999();
+
+	/**
+	* Returns every metric as a JSON object
+	* @return the JSON text
+	**/
+	String toJson();
+}
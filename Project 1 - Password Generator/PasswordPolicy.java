@@ -0,0 +1,352 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+* Rules a password has to follow: its length, the characters it can be built from and how many
+* letters, digits and symbols it must hold
+* The generator, the validator, the shard files, the dictionary automaton and the bitset all take their
+* alphabet and limits from a policy, and the alphabet order is the order passwords are generated in
+* A policy is read from a properties file such as:
+*   length=8-12
+*   alphabet=0123456789abcdefghijklmnopqrstuvwxyz!@$^_*
+*   forbidden=ai14
+*   letters=1-3
+*   digits=1-2
+*   symbols=1-2
+* where any missing key keeps the value of the default 5 character policy
+* @author Jake Halloran
+* @version 1.0
+**/
+public class PasswordPolicy{
+	public static final int LETTER = 0; //class of 'a' to 'z'
+	public static final int DIGIT = 1; //class of '0' to '9'
+	public static final int SYMBOL = 2; //class of every other character
+	private static final String DEFAULT_ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyz!@$^_*"; //order the original generator tried characters in
+	private final int minLength; //fewest characters in a password
+	private final int maxLength; //most characters in a password
+	private final String alphabet; //every character a password may hold, in generation order
+	private final int charIndex[]; //maps a character back to its alphabet index, -1 if not in the alphabet
+	private final int classOf[]; //class of each alphabet index
+	private final boolean allowed[]; //false for alphabet indices that are forbidden in passwords
+	private final int minCount[]; //fewest characters of each class
+	private final int maxCount[]; //most characters of each class
+
+	/**
+	* Creates a policy, checking that at least one password can satisfy it
+	* @param minLength fewest characters in a password
+	* @param maxLength most characters in a password
+	* @param alphabet every character a password can be built from, in generation order, ASCII only
+	* @param forbidden characters of the alphabet that may never appear in a password
+	* @param minCount fewest letters, digits and symbols, indexed by class
+	* @param maxCount most letters, digits and symbols, indexed by class
+	* @throws IllegalArgumentException if the limits contradict each other or the alphabet is not usable
+	**/
+	public PasswordPolicy(int minLength, int maxLength, String alphabet, String forbidden, int minCount[], int maxCount[]){
+		if(minLength<1||maxLength<minLength){
+			throw new IllegalArgumentException("Password length must be at least 1 and the minimum cannot exceed the maximum.");
+		}
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+		this.alphabet = alphabet;
+		this.minCount = minCount.clone();
+		this.maxCount = maxCount.clone();
+		charIndex = new int[128];
+		Arrays.fill(charIndex,-1);
+		classOf = new int[alphabet.length()];
+		allowed = new boolean[alphabet.length()];
+
+		int available[] = new int[3]; //allowed characters of each class
+		for(int i=0;i<alphabet.length();i++){
+			char c = alphabet.charAt(i);
+			if(c>=charIndex.length||charIndex[c]>=0){
+				throw new IllegalArgumentException("Alphabet character "+c+" is repeated or not ASCII.");
+			}
+			//'+' ends every password in the shard tries and line breaks end every password in the files
+			if(c=='+'||c=='\n'||c=='\r'||Character.isUpperCase(c)){
+				throw new IllegalArgumentException("Alphabet character "+c+" cannot be stored in a password file.");
+			}
+			charIndex[c] = i;
+			classOf[i] = c>='a'&&c<='z'?LETTER:c>='0'&&c<='9'?DIGIT:SYMBOL;
+			allowed[i] = forbidden.indexOf(c)<0;
+			if(allowed[i]){
+				available[classOf[i]]++;
+			}
+		}
+
+		//Every class needs room for its minimum, and the limits together must allow some length in range
+		int least = 0, most = 0;
+		for(int type=0;type<3;type++){
+			if(minCount[type]<0||maxCount[type]<minCount[type]||(minCount[type]>0&&available[type]==0)){
+				throw new IllegalArgumentException("Character class limits "+minCount[type]+"-"+maxCount[type]+" cannot be met.");
+			}
+			if(available[type]==0){
+				this.maxCount[type] = 0; //a class with no allowed characters can never be used
+			}
+			least += minCount[type];
+			most += this.maxCount[type];
+		}
+		if(least>maxLength||most<minLength){
+			throw new IllegalArgumentException("No password length between "+minLength+" and "+maxLength+" meets the character class limits.");
+		}
+	}
+
+	/**
+	* Returns the policy of the original assignment: 5 characters, 1-3 letters, 1-2 digits and 1-2 symbols,
+	* never using 'a', 'i', '1' or '4'
+	* @return the default policy
+	**/
+	public static PasswordPolicy defaults(){
+		return new PasswordPolicy(5,5,DEFAULT_ALPHABET,"ai14",new int[]{1,1,1},new int[]{3,2,2});
+	}
+
+	/**
+	* Reads a policy from a properties file, keys missing from the file keep their default values
+	* @param fileName name of the policy file
+	* @return the policy in the file, or the default policy if there is no such file
+	* @throws IOException if the file exists but cannot be read
+	* @throws IllegalArgumentException if a value is malformed or the policy cannot be met
+	**/
+	public static PasswordPolicy read(String fileName) throws IOException{
+		PasswordPolicy defaults = defaults();
+		if(!new File(fileName).exists()){
+			return defaults;
+		}
+		Properties values = new Properties();
+		Reader file = new BufferedReader(new FileReader(fileName));
+		try{
+			values.load(file);
+		}
+		finally{
+			file.close();
+		}
+
+		int length[] = range(values.getProperty("length"),defaults.minLength,defaults.maxLength);
+		int letters[] = range(values.getProperty("letters"),defaults.minCount[LETTER],defaults.maxCount[LETTER]);
+		int digits[] = range(values.getProperty("digits"),defaults.minCount[DIGIT],defaults.maxCount[DIGIT]);
+		int symbols[] = range(values.getProperty("symbols"),defaults.minCount[SYMBOL],defaults.maxCount[SYMBOL]);
+		return new PasswordPolicy(length[0],length[1],
+			values.getProperty("alphabet",defaults.alphabet).toLowerCase(),
+			values.getProperty("forbidden","ai14").toLowerCase(),
+			new int[]{letters[0],digits[0],symbols[0]},new int[]{letters[1],digits[1],symbols[1]});
+	}
+
+	/**
+	* Parses a value of the form "n" or "min-max"
+	* @param value the value read, or null if the key was missing
+	* @param min minimum to use if the value is missing
+	* @param max maximum to use if the value is missing
+	* @return the minimum and maximum
+	* @throws IllegalArgumentException if the value is not a number or range
+	**/
+	private static int[] range(String value, int min, int max){
+		if(value==null){
+			return new int[]{min,max};
+		}
+		value = value.trim();
+		int dash = value.indexOf('-');
+		if(dash<0){
+			int n = Integer.parseInt(value);
+			return new int[]{n,n};
+		}
+		return new int[]{Integer.parseInt(value.substring(0,dash).trim()),Integer.parseInt(value.substring(dash+1).trim())};
+	}
+
+	/**
+	* Checks whether a password prefix can still be finished into a password
+	* The prefix must not hold too many characters of any class, the remaining positions must be able to
+	* hold every character still needed to reach each class minimum, and the class maximums must leave
+	* room to reach the minimum length
+	* @param counts letters, digits and symbols in the prefix, indexed by class
+	* @param length number of characters in the prefix
+	* @return true if some password starts with a prefix with these counts
+	**/
+	public boolean canFinish(int counts[], int length){
+		int needed = 0, room = 0;
+		for(int type=0;type<3;type++){
+			if(counts[type]>maxCount[type]){
+				return false;
+			}
+			if(counts[type]<minCount[type]){
+				needed += minCount[type]-counts[type];
+			}
+			room += maxCount[type]-counts[type];
+		}
+		return needed<=maxLength-length&&length+room>=minLength;
+	}
+
+	/**
+	* Checks whether a password meets the length and class minimums, assuming canFinish already holds
+	* @param counts letters, digits and symbols in the password, indexed by class
+	* @param length number of characters in the password
+	* @return true if the counts make a complete password
+	**/
+	public boolean isComplete(int counts[], int length){
+		return length>=minLength&&counts[LETTER]>=minCount[LETTER]&&counts[DIGIT]>=minCount[DIGIT]&&counts[SYMBOL]>=minCount[SYMBOL];
+	}
+
+	/**
+	* Checks a whole password against the policy, ignoring the dictionary
+	* @param pass the password to check
+	* @return true if the password has a legal length, only allowed characters and the right class counts
+	**/
+	public boolean accepts(CharSequence pass){
+		if(pass.length()<minLength||pass.length()>maxLength){
+			return false;
+		}
+		int counts[] = new int[3];
+		for(int i=0;i<pass.length();i++){
+			int index = indexOf(pass.charAt(i));
+			if(index<0||!allowed[index]){
+				return false;
+			}
+			counts[classOf[index]]++;
+		}
+		return canFinish(counts,pass.length())&&isComplete(counts,pass.length());
+	}
+
+	/**
+	* Returns the shard character holding passwords that start with a character
+	* @param firstChar the first character of the password
+	* @return the character naming the shard, passwords starting with a character no password can start with
+	* use the shard of the first allowed character
+	**/
+	public char shardFor(char firstChar){
+		int index = indexOf(firstChar);
+		if(index>=0&&allowed[index]){
+			return firstChar;
+		}
+		return defaultShard();
+	}
+
+	/**
+	* Returns the shard used for passwords whose first character has no shard of its own
+	* @return the first allowed character of the alphabet, '0' for the default policy
+	**/
+	public char defaultShard(){
+		for(int i=0;;i++){
+			if(allowed[i]){
+				return alphabet.charAt(i);
+			}
+		}
+	}
+
+	/**
+	* Returns the name of the file holding every password that starts with a character
+	* @param firstChar the first character of the passwords in the file
+	* @return the shard file name, '*' is stored as '+' and other characters that are not legal in file names
+	* are stored as their hex code so every shard name is a legal file name
+	**/
+	public String shardName(char firstChar){
+		if(firstChar=='*'){
+			return "+passwords.txt";
+		}
+		if("/\\:?\"<>|.".indexOf(firstChar)>=0||firstChar<' '){
+			return "%"+Integer.toHexString(firstChar)+"passwords.txt";
+		}
+		return firstChar+"passwords.txt";
+	}
+
+	/**
+	* Returns the alphabet index of a character
+	* @param c the character
+	* @return its index, or -1 if it is not in the alphabet
+	**/
+	public int indexOf(char c){
+		return c<charIndex.length?charIndex[c]:-1;
+	}
+
+	/**
+	* Returns the character at an alphabet index
+	* @param index the alphabet index
+	* @return the character
+	**/
+	public char charAt(int index){
+		return alphabet.charAt(index);
+	}
+
+	/**
+	* Returns the class of the character at an alphabet index
+	* @param index the alphabet index
+	* @return LETTER, DIGIT or SYMBOL
+	**/
+	public int classOf(int index){
+		return classOf[index];
+	}
+
+	/**
+	* Tells whether the character at an alphabet index may appear in passwords
+	* @param index the alphabet index
+	* @return false if the character is forbidden
+	**/
+	public boolean isAllowed(int index){
+		return allowed[index];
+	}
+
+	/**
+	* Returns the number of characters in the alphabet, counting forbidden ones
+	* @return the alphabet size
+	**/
+	public int alphabetSize(){
+		return alphabet.length();
+	}
+
+	/**
+	* Returns every character in the alphabet in generation order, counting forbidden ones
+	* @return the alphabet
+	**/
+	public String getAlphabet(){
+		return alphabet;
+	}
+
+	/**
+	* Returns the fewest characters a password can have
+	* @return the minimum length
+	**/
+	public int getMinLength(){
+		return minLength;
+	}
+
+	/**
+	* Returns the most characters a password can have
+	* @return the maximum length
+	**/
+	public int getMaxLength(){
+		return maxLength;
+	}
+
+	/**
+	* Returns the fewest characters of a class a password can have
+	* @param type LETTER, DIGIT or SYMBOL
+	* @return the class minimum
+	**/
+	public int getMinCount(int type){
+		return minCount[type];
+	}
+
+	/**
+	* Returns the most characters of a class a password can have
+	* @param type LETTER, DIGIT or SYMBOL
+	* @return the class maximum
+	**/
+	public int getMaxCount(int type){
+		return maxCount[type];
+	}
+
+	/**
+	* Tells whether every valid password fits in a PasswordBitset, which needs a fixed length
+	* and one bit for every string over the alphabet
+	* @return true if a bitset can be used with this policy
+	**/
+	public boolean fitsBitset(){
+		return minLength==maxLength&&PasswordBitset.slots(maxLength,alphabet.length())<=8L*Integer.MAX_VALUE-7;
+	}
+
+	/**
+	* Describes the password length for prompts
+	* @return the length, or the range of lengths such as "8 to 12"
+	**/
+	public String lengthText(){
+		return minLength==maxLength?Integer.toString(minLength):minLength+" to "+maxLength;
+	}
+}
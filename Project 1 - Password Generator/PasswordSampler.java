@@ -0,0 +1,103 @@
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+* Draws uniformly random valid passwords without generating the password list
+* Every valid password has a rank, its line number in good_passwords.txt, and a random rank is turned back
+* into its password by walking down one character at a time, skipping past the number of valid passwords
+* under each smaller character, which the PasswordCounter already knows
+* Once built, a sampler only reads its counts, so any number of threads may draw from it at once
+* @author Jake Halloran
+* @version 1.0
+**/
+public class PasswordSampler{
+	private final PasswordPolicy policy; //policy every drawn password follows
+	private final DictionaryAutomaton automaton; //dictionary automaton used to throw out prefixes holding a word
+	private final PasswordCounter counter; //valid password counts below every prefix
+	private final BigInteger total; //number of valid passwords
+	private final Random random; //source of the random ranks
+
+	/**
+	* Creates a sampler, counting every valid password up front so drawing never has to count
+	* @param policy password policy giving the length, alphabet and character class limits
+	* @param automaton dictionary automaton built for the same policy
+	* @param random source of randomness, which must be thread safe if several threads draw at once
+	* @throws IllegalArgumentException if no password meets the policy or the counts cannot be allocated
+	**/
+	public PasswordSampler(PasswordPolicy policy, DictionaryAutomaton automaton, Random random){
+		this.policy = policy;
+		this.automaton = automaton;
+		this.random = random;
+		counter = new PasswordCounter(policy,automaton);
+		total = counter.count(); //fills in the count of every prefix a draw can visit
+		if(total.signum()==0){
+			throw new IllegalArgumentException("No password meets the policy without containing a dictionary word.");
+		}
+	}
+
+	/**
+	* Returns the number of passwords a draw is made from
+	* @return the valid password count
+	**/
+	public BigInteger size(){
+		return total;
+	}
+
+	/**
+	* Draws a valid password, every valid password being equally likely
+	* @return the password
+	**/
+	public String next(){
+		BigInteger rank;
+		do{
+			rank = new BigInteger(total.bitLength(),random);
+		}while(rank.compareTo(total)>=0);
+		return unrank(rank);
+	}
+
+	/**
+	* Returns the valid password with a rank, in the same order -g writes them to good_passwords.txt
+	* Visits one level per character, so it takes time proportional to the length times the alphabet
+	* @param rank the rank, at least 0 and less than size()
+	* @return the password with that rank
+	* @throws IllegalArgumentException if the rank is out of range
+	**/
+	public String unrank(BigInteger rank){
+		if(rank.signum()<0||rank.compareTo(total)>=0){
+			throw new IllegalArgumentException("Rank "+rank+" is not below "+total+".");
+		}
+		StringBuilder pass = new StringBuilder(policy.getMaxLength());
+		int counts[] = new int[3]; //letters, digits and symbols in pass
+		int state = automaton.start();
+		while(true){
+			//The prefix itself comes before every longer password starting with it
+			if(policy.isComplete(counts,pass.length())){
+				if(rank.signum()==0){
+					return pass.toString();
+				}
+				rank = rank.subtract(BigInteger.ONE);
+			}
+
+			//Skips whole subtrees until the rank falls inside one, then moves into it
+			int length = pass.length()+1;
+			for(int i=0;;i++){
+				int nextState = automaton.next(state,i);
+				if(!policy.isAllowed(i)||automaton.isWordEnd(nextState)){
+					continue;
+				}
+				int type = policy.classOf(i);
+				counts[type]++;
+				if(policy.canFinish(counts,length)){
+					BigInteger below = counter.count(nextState,counts,length);
+					if(rank.compareTo(below)<0){
+						pass.append(policy.charAt(i));
+						state = nextState;
+						break;
+					}
+					rank = rank.subtract(below);
+				}
+				counts[type]--;
+			}
+		}
+	}
+}
@@ -0,0 +1,272 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+* Least recently used cache of password shard tries, keyed by shard file name
+* Loaded tries stay in memory until the estimated size of all cached tries goes over a byte budget,
+* at which point the least recently used shards are dropped
+* Front coded shards opened for lookups are memory mapped rather than loaded, so they are kept open for
+* good and are not counted against the budget; there is at most one per shard file
+* @author Jake Halloran
+* @version 1.0
+**/
+public class ShardCache{
+	private final LinkedHashMap<String,DlbTrie> shards; //access ordered map, eldest entry is the least recently used
+	private final long budget; //most bytes of tries to keep loaded
+	private final String alphabet; //password alphabet the shard snapshots must have been written with
+	private final HashMap<String,FrontCodedShard> compressed; //front coded shards opened for lookups, mapped rather than loaded
+	private final PasswordMetrics metrics; //metrics shard reads, hits, misses and evictions are recorded in, may be null
+	private long used; //estimated bytes of the tries currently loaded
+	private long hits; //lookups answered from memory
+	private long misses; //lookups that had to read a shard file
+	private long evictions; //shards dropped to stay under the budget
+	private long compressedLookups; //lookups answered from a front coded shard without loading its trie
+
+	/**
+	* Creates an empty cache
+	* @param budget most bytes of tries to keep loaded, the most recently loaded shard is always kept
+	* @param alphabet password alphabet of the policy the shards were generated with
+	**/
+	public ShardCache(long budget, String alphabet){
+		this(budget,alphabet,null);
+	}
+
+	/**
+	* Creates an empty cache that records the time of every shard read and its hits, misses and evictions
+	* @param budget most bytes of tries to keep loaded, the most recently loaded shard is always kept
+	* @param alphabet password alphabet of the policy the shards were generated with
+	* @param metrics metrics shard reads and lookups are recorded in, or null to record nothing
+	**/
+	public ShardCache(long budget, String alphabet, PasswordMetrics metrics){
+		this.budget = budget;
+		this.alphabet = alphabet;
+		this.metrics = metrics;
+		shards = new LinkedHashMap<String,DlbTrie>(64,0.75f,true);
+		compressed = new HashMap<String,FrontCodedShard>();
+	}
+
+	/**
+	* Checks whether a shard holds a password without loading its trie if it is not already loaded
+	* The front coded shard is binary searched in place when there is one, so confirming a valid password
+	* only reads the few blocks the search touches
+	* @param fileName name of the text shard
+	* @param password the password to look for
+	* @return true if the password is in the shard
+	* @throws IOException if the shard cannot be read
+	**/
+	public boolean contains(String fileName, CharSequence password) throws IOException{
+		DlbTrie trie = shards.get(fileName);
+		if(trie!=null){
+			hit(true);
+			return trie.contains(password);
+		}
+		FrontCodedShard shard = compressed.get(fileName);
+		if(shard==null&&new File(compressedName(fileName)).exists()){
+			shard = FrontCodedShard.open(compressedName(fileName),alphabet);
+			compressed.put(fileName,shard);
+		}
+		if(shard!=null){
+			compressedLookups++;
+			if(metrics!=null){
+				metrics.recordCompressedLookup();
+			}
+			return shard.contains(password);
+		}
+		return get(fileName).contains(password);
+	}
+
+	/**
+	* Returns the trie for a shard, reading the shard file only if it is not already loaded
+	* @param fileName name of the shard file
+	* @return the trie holding every password in the shard
+	* @throws IOException if the shard is not loaded and cannot be read
+	**/
+	public DlbTrie get(String fileName) throws IOException{
+		DlbTrie trie = shards.get(fileName);
+		if(trie!=null){
+			hit(true);
+			return trie;
+		}
+		hit(false);
+		long start = System.nanoTime();
+		trie = read(fileName,alphabet);
+		if(metrics!=null){
+			metrics.recordShardLoad(System.nanoTime()-start,trie.size());
+		}
+		shards.put(fileName,trie);
+		used += trie.memoryUsage();
+
+		//Drops least recently used shards, never the one just loaded
+		Iterator<Map.Entry<String,DlbTrie>> eldest = shards.entrySet().iterator();
+		while(used>budget&&shards.size()>1){
+			Map.Entry<String,DlbTrie> entry = eldest.next();
+			used -= entry.getValue().memoryUsage();
+			eldest.remove();
+			evictions++;
+			if(metrics!=null){
+				metrics.recordCacheEviction();
+			}
+		}
+		return trie;
+	}
+
+	/**
+	* Counts a lookup as a hit or a miss, in the cache and in the metrics
+	* @param hit true if the shard was already loaded
+	**/
+	private void hit(boolean hit){
+		if(hit){
+			hits++;
+		}
+		else{
+			misses++;
+		}
+		if(metrics!=null){
+			metrics.recordCacheLookup(hit);
+		}
+	}
+
+	/**
+	* Reads a shard into a new trie, preferring the binary snapshot written after generation, then the
+	* front coded shard, then the text shard of an older generation
+	* A snapshot or front coded shard written for another alphabet is ignored and the next one is read instead
+	* @param fileName name of the text shard
+	* @param alphabet password alphabet of the policy the shards were generated with
+	* @return the loaded trie
+	* @throws IOException if the shard cannot be read
+	**/
+	static DlbTrie read(String fileName, String alphabet) throws IOException{
+		File snapshot = new File(snapshotName(fileName));
+		if(snapshot.exists()){
+			try{
+				return DlbTrie.readSnapshot(snapshot.getPath(),alphabet);
+			}
+			catch(IOException e){
+				System.err.println(e.getMessage()+" Reading "+fileName+" instead.");
+			}
+		}
+		File shard = new File(compressedName(fileName));
+		if(shard.exists()){
+			try{
+				return FrontCodedShard.open(shard.getPath(),alphabet).toTrie();
+			}
+			catch(IOException e){
+				System.err.println(e.getMessage()+" Reading "+fileName+" instead.");
+			}
+		}
+		return load(fileName);
+	}
+
+	/**
+	* Reads a shard file into a new trie, appending the '+' valid password flag to each line
+	* The file is memory mapped and each line is added straight from the mapped bytes, then the trie is minimized
+	* @param fileName name of the shard file
+	* @return the loaded trie
+	* @throws IOException if the shard cannot be read
+	**/
+	static DlbTrie load(String fileName) throws IOException{
+		MappedByteBuffer bytes;
+		RandomAccessFile file = new RandomAccessFile(fileName,"r");
+		try{
+			if(file.length()>=Integer.MAX_VALUE){
+				throw new IOException(fileName+" is too large to map.");
+			}
+			bytes = file.getChannel().map(FileChannel.MapMode.READ_ONLY,0,file.length());
+		}
+		finally{
+			file.close(); //the mapping stays valid after the file is closed
+		}
+		
+		//Sorted passwords share most of their prefixes, so the arrays start small and double as they fill
+		DlbTrie trie = new DlbTrie(null,false);
+		int start = 0;
+		for(int i=0;i<=bytes.limit();i++){
+			if(i==bytes.limit()||bytes.get(i)=='\n'||bytes.get(i)=='\r'){
+				//Skips empty lines, including the gap between \r and \n
+				if(i>start){
+					trie.add(bytes,start,i,'+');
+				}
+				start = i+1;
+			}
+		}
+		trie.minimize(); //shares the many identical password suffixes, leaving exact size arrays
+		return trie;
+	}
+
+	/**
+	* Returns the name of the binary trie snapshot for a text shard
+	* @param fileName name of the text shard
+	* @return the snapshot name, the shard name with .txt replaced by .dlb
+	**/
+	static String snapshotName(String fileName){
+		if(fileName.endsWith(".txt")){
+			fileName = fileName.substring(0,fileName.length()-4);
+		}
+		return fileName+".dlb";
+	}
+
+	/**
+	* Returns the name of the front coded copy of a text shard
+	* @param fileName name of the text shard
+	* @return the front coded shard name, the shard name with .txt replaced by .fc
+	**/
+	static String compressedName(String fileName){
+		if(fileName.endsWith(".txt")){
+			fileName = fileName.substring(0,fileName.length()-4);
+		}
+		return fileName+".fc";
+	}
+
+	/**
+	* Returns the number of lookups answered without reading a file
+	* @return the hit count
+	**/
+	public long getHits(){
+		return hits;
+	}
+
+	/**
+	* Returns the number of lookups that had to read a shard file
+	* @return the miss count
+	**/
+	public long getMisses(){
+		return misses;
+	}
+
+	/**
+	* Returns the number of lookups answered from a front coded shard, which are neither hits nor misses
+	* @return the front coded lookup count
+	**/
+	public long getCompressedLookups(){
+		return compressedLookups;
+	}
+
+	/**
+	* Returns the number of shards dropped to stay under the budget
+	* @return the eviction count
+	**/
+	public long getEvictions(){
+		return evictions;
+	}
+
+	/**
+	* Returns the estimated bytes of tries currently loaded
+	* @return the bytes in use
+	**/
+	public long getUsed(){
+		return used;
+	}
+
+	/**
+	* Summarizes the cache counters
+	* @return the counters in a single line
+	**/
+	public String toString(){
+		return "shards="+shards.size()+" bytes="+used+" hits="+hits+" misses="+misses+" compressed="+compressedLookups+" evictions="+evictions;
+	}
+}
@@ -0,0 +1,294 @@
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+* Checks that the shard files written after generation hold exactly the passwords of the text shard
+* Generates a small policy's passwords in -g order into a text shard, then reads them back through the front coded
+* shard, the minimized trie and the binary trie snapshot, checks that damaged snapshots are refused so the
+* shard cache falls back to the other files, and checks the nearest passwords against a brute force search
+* Usage: java ShardFormatTest, exits with status 1 if a check fails
+* @author Jake Halloran
+* @version 1.0
+**/
+public class ShardFormatTest{
+	private static final String ALPHABET = "0123bcd!@"; //small alphabet so every string can be tried
+	private static final String QUERIES[] = {"0b!2","0bd@@","0","9zz!","0c2@d1"}; //attempts given to nearest
+	private static final int SUGGESTIONS = 10; //passwords asked of nearest, as the validator does
+
+	/**
+	* Runs the checks in a temporary directory
+	* @param args unused
+	**/
+	public static void main(String args[]){
+		PasswordPolicy policy = new PasswordPolicy(3,4,ALPHABET,"",new int[]{1,1,1},new int[]{2,2,2});
+		File directory = null;
+		boolean passed = true;
+		try{
+			directory = Files.createTempDirectory("pw_check").toFile();
+			String text = new File(directory,policy.shardName(policy.defaultShard())).getPath();
+
+			//Splits every string of the alphabet starting with the shard character into passwords and the rest
+			List<String> passwords = new ArrayList<String>();
+			List<String> others = new ArrayList<String>();
+			candidates(policy,new StringBuilder().append(policy.defaultShard()),passwords,others);
+			List<String> generated = shard(policy);
+			if(!generated.equals(passwords)){
+				throw new IOException("generated shard of "+generated.size()+" passwords does not match the "+passwords.size()+" the policy accepts");
+			}
+			others.add("0zz!");
+			writeShard(text,passwords);
+
+			//Front coded shard, both the block search and the decoded passwords
+			String compressed = ShardCache.compressedName(text);
+			int written = FrontCodedShard.compress(text,compressed,ALPHABET);
+			FrontCodedShard fc = FrontCodedShard.open(compressed,ALPHABET);
+			passed &= expect(written==passwords.size()&&fc.size()==passwords.size(),".fc holds "+fc.size()+" of "+passwords.size()+" passwords");
+			List<String> decoded = new ArrayList<String>();
+			for(Iterator<String> words=fc.iterator();words.hasNext();){
+				decoded.add(words.next());
+			}
+			passed &= expect(decoded.equals(passwords),".fc passwords decode out of order or changed");
+			passed &= matches(".fc",fc,null,passwords,others);
+			passed &= matches(".fc trie",null,fc.toTrie(),passwords,others);
+
+			//Minimizing shares suffixes without changing which passwords are held
+			DlbTrie built = new DlbTrie(null,false);
+			for(String pass : passwords){
+				built.add(pass+"+");
+			}
+			int before = built.size();
+			built.minimize();
+			passed &= expect(built.isMinimized()&&built.size()<before,"minimize left "+built.size()+" of "+before+" nodes");
+			passed &= matches("minimized trie",null,built,passwords,others);
+			DlbTrie loaded = ShardCache.load(text);
+			passed &= matches("text shard",null,loaded,passwords,others);
+
+			//Snapshot round trip, the reloaded trie must answer every query the same way
+			String snapshot = ShardCache.snapshotName(text);
+			loaded.writeSnapshot(snapshot,ALPHABET);
+			DlbTrie reloaded = DlbTrie.readSnapshot(snapshot,ALPHABET);
+			passed &= matches(".dlb",null,reloaded,passwords,others);
+			for(String query : QUERIES){
+				List<String> nearest = reloaded.nearest(query,SUGGESTIONS,policy.getMaxLength());
+				passed &= expect(nearest.equals(loaded.nearest(query,SUGGESTIONS,policy.getMaxLength())),".dlb nearest "+query+" differs from the text shard");
+				passed &= checkNearest(query,nearest,passwords,policy.getMaxLength());
+			}
+			passed &= expect(ShardCache.read(text,ALPHABET).contains(passwords.get(0)),"shard cache could not read the .dlb");
+			String plain = new File(directory,"plain.dlb").getPath();
+			DlbTrie unminimized = new DlbTrie(null,false);
+			for(String pass : passwords){
+				unminimized.add(pass+"+");
+			}
+			unminimized.writeSnapshot(plain,ALPHABET);
+			passed &= matches("unminimized .dlb",null,DlbTrie.readSnapshot(plain,ALPHABET),passwords,others);
+
+			//Damaged snapshots are refused, and the shard cache reads the front coded shard instead
+			byte good[] = Files.readAllBytes(new File(snapshot).toPath());
+			passed &= refused(snapshot,Arrays.copyOf(good,good.length-4),"truncated");
+			byte corrupt[] = good.clone();
+			ByteBuffer.wrap(corrupt).putInt(corrupt.length-8*reloaded.size(),reloaded.size()); //first child of the root
+			passed &= refused(snapshot,corrupt,"child link past the last node");
+			corrupt = good.clone();
+			ByteBuffer.wrap(corrupt).putInt(corrupt.length-4,-2); //next sibling of the last node
+			passed &= refused(snapshot,corrupt,"negative sibling link");
+			corrupt = good.clone();
+			ByteBuffer.wrap(corrupt).putInt(corrupt.length-4*reloaded.size()-4,reloaded.size()-1); //first child of the last node
+			passed &= refused(snapshot,corrupt,"node that is its own child");
+			corrupt = good.clone();
+			ByteBuffer.wrap(corrupt).putInt(corrupt.length-4*reloaded.size()+4,reloaded.size()-1); //next sibling of node 1
+			passed &= refused(snapshot,corrupt,"sibling link back up the minimized trie");
+			passed &= matches("fallback from a corrupt .dlb",null,ShardCache.read(text,ALPHABET),passwords,others);
+			passed &= refused(snapshot,Arrays.copyOf(good,good.length),null);
+		}
+		catch(IOException e){
+			System.out.println("FAIL "+e.getMessage());
+			passed = false;
+		}
+		finally{
+			if(directory!=null){
+				for(File file : directory.listFiles()){
+					file.delete();
+				}
+				directory.delete();
+			}
+		}
+		System.out.println(passed?"ok .fc and .dlb shards round trip the text shard":"FAIL");
+		System.exit(passed?0:1);
+	}
+
+	/**
+	* Generates the passwords of the shard the way -g does, from the policy and an empty dictionary
+	* @param policy the password policy
+	* @return the shard's passwords in the order -g writes them
+	**/
+	private static List<String> shard(PasswordPolicy policy){
+		PasswordSampler sampler = new PasswordSampler(policy,new DictionaryAutomaton(new DlbTrie(null,false),policy),new Random(1));
+		List<String> passwords = new ArrayList<String>();
+		for(BigInteger rank=BigInteger.ZERO;rank.compareTo(sampler.size())<0;rank=rank.add(BigInteger.ONE)){
+			String pass = sampler.unrank(rank);
+			if(pass.charAt(0)==policy.defaultShard()){
+				passwords.add(pass);
+			}
+		}
+		return passwords;
+	}
+
+	/**
+	* Sorts every string of the alphabet starting with a prefix and no longer than the longest password
+	* @param policy the password policy
+	* @param pass the prefix, restored before returning
+	* @param passwords receives the strings the policy accepts, in alphabet order with prefixes first
+	* @param others receives every other string
+	**/
+	private static void candidates(PasswordPolicy policy, StringBuilder pass, List<String> passwords, List<String> others){
+		(policy.accepts(pass)?passwords:others).add(pass.toString());
+		if(pass.length()<policy.getMaxLength()){
+			for(int i=0;i<policy.alphabetSize();i++){
+				pass.append(policy.charAt(i));
+				candidates(policy,pass,passwords,others);
+				pass.setLength(pass.length()-1);
+			}
+		}
+	}
+
+	/**
+	* Writes passwords as a text shard
+	* @param fileName the shard file
+	* @param passwords the passwords, one per line
+	* @throws IOException if the file cannot be written
+	**/
+	private static void writeShard(String fileName, List<String> passwords) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+		try{
+			for(String pass : passwords){
+				out.println(pass);
+			}
+		}
+		finally{
+			out.close();
+		}
+		if(out.checkError()){
+			throw new IOException("Error writing "+fileName+".");
+		}
+	}
+
+	/**
+	* Checks that a shard holds every password and none of the other strings
+	* @param name what is being checked, for the failure message
+	* @param fc the front coded shard to check, or null to check the trie
+	* @param trie the trie to check if fc is null
+	* @param passwords strings that must be held
+	* @param others strings that must not be held
+	* @return true if the shard holds exactly the passwords
+	**/
+	private static boolean matches(String name, FrontCodedShard fc, DlbTrie trie, List<String> passwords, List<String> others){
+		for(String pass : passwords){
+			if(!(fc!=null?fc.contains(pass):trie.contains(pass))){
+				return expect(false,name+" is missing "+pass);
+			}
+		}
+		for(String pass : others){
+			if(fc!=null?fc.contains(pass):trie.contains(pass)){
+				return expect(false,name+" holds "+pass);
+			}
+		}
+		return true;
+	}
+
+	/**
+	* Checks nearest against the distance from the query to every password
+	* The returned distances must be in order and be the smallest ones, with every password within the limit
+	* returned when there are fewer than asked for
+	* @param query the attempt
+	* @param nearest the passwords nearest returned
+	* @param passwords every password of the shard
+	* @param maxDistance the distance limit given to nearest
+	* @return true if nearest returned a correct closest first list
+	**/
+	private static boolean checkNearest(String query, List<String> nearest, List<String> passwords, int maxDistance){
+		List<Integer> all = new ArrayList<Integer>();
+		for(String pass : passwords){
+			int d = distance(query,pass);
+			if(d<=maxDistance){
+				all.add(d);
+			}
+		}
+		Collections.sort(all);
+		List<Integer> found = new ArrayList<Integer>();
+		for(String pass : nearest){
+			if(!passwords.contains(pass)){
+				return expect(false,"nearest "+query+" returned "+pass+", which is not in the shard");
+			}
+			found.add(distance(query,pass));
+		}
+		List<Integer> best = all.subList(0,Math.min(SUGGESTIONS,all.size()));
+		return expect(found.equals(best),"nearest "+query+" returned distances "+found+", the closest are "+best);
+	}
+
+	/**
+	* Returns the optimal string alignment distance, which counts a swap of adjacent characters as one edit
+	* @param a the first string
+	* @param b the second string
+	* @return the number of insertions, deletions, substitutions and adjacent swaps between them
+	**/
+	private static int distance(String a, String b){
+		int d[][] = new int[a.length()+1][b.length()+1];
+		for(int i=0;i<=a.length();i++){
+			for(int j=0;j<=b.length();j++){
+				if(i==0||j==0){
+					d[i][j] = i+j;
+					continue;
+				}
+				d[i][j] = Math.min(Math.min(d[i-1][j]+1,d[i][j-1]+1),d[i-1][j-1]+(a.charAt(i-1)==b.charAt(j-1)?0:1));
+				if(i>1&&j>1&&a.charAt(i-1)==b.charAt(j-2)&&a.charAt(i-2)==b.charAt(j-1)){
+					d[i][j] = Math.min(d[i][j],d[i-2][j-2]+1);
+				}
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+
+	/**
+	* Writes a snapshot file and checks whether readSnapshot refuses it
+	* @param fileName the snapshot file
+	* @param bytes the file contents
+	* @param damage what is wrong with the file, or null if it is intact and must load
+	* @return true if a damaged file was refused with an IOException or an intact one loaded
+	* @throws IOException if the file cannot be written
+	**/
+	private static boolean refused(String fileName, byte bytes[], String damage) throws IOException{
+		FileOutputStream out = new FileOutputStream(fileName);
+		try{
+			out.write(bytes);
+		}
+		finally{
+			out.close();
+		}
+		try{
+			DlbTrie.readSnapshot(fileName,ALPHABET);
+			return expect(damage==null,".dlb with a "+damage+" was loaded");
+		}
+		catch(IOException e){
+			return expect(damage!=null,"intact .dlb was refused: "+e.getMessage());
+		}
+		catch(RuntimeException e){
+			return expect(false,".dlb with a "+damage+" threw "+e);
+		}
+	}
+
+	/**
+	* Reports a failed check
+	* @param condition the result of the check
+	* @param failure what went wrong, printed if the check failed
+	* @return the condition
+	**/
+	private static boolean expect(boolean condition, String failure){
+		if(!condition){
+			System.out.println("FAIL "+failure);
+		}
+		return condition;
+	}
+}
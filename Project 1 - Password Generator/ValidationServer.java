@@ -0,0 +1,253 @@
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+* Multi-threaded password validation server speaking a line based protocol over TCP
+* Every shard trie is loaded before the server starts listening and is never changed afterwards,
+* so worker threads share the tries without any locking
+* Each connection is answered by its own thread, so a client idle between requests only ever holds up
+* itself; connections past the limit are answered with an error and closed
+* Requests, one per line:
+*   CHECK password   answers "valid", or "invalid" followed by a tab and comma separated similar passwords
+*   PREFIX password  answers the length of the longest valid prefix of the password
+*   RANDOM           answers a uniformly random valid password
+*   METRICS          answers the server's metrics as a single line of JSON
+*   QUIT             closes the connection
+* @author Jake Halloran
+* @version 1.0
+**/
+public class ValidationServer{
+	public static final int DEFAULT_CONNECTIONS = 256; //connections served at the same time unless asked otherwise
+	private final DlbTrie shards[]; //trie for each shard character, indexed by the character
+	private final PasswordPolicy policy; //policy the shards were generated with
+	private final PasswordBitset goodBits; //bitset of valid passwords, may be null
+	private final PasswordSampler sampler; //draws the passwords handed out by RANDOM, may be null
+	private final PasswordMetrics metrics; //records shard reads and CHECK latency, may be null
+	private final ServerSocket server; //socket connections are accepted on
+	private final ExecutorService workers; //threads answering connections, one for each open connection
+	private final Semaphore connections; //permits for the connections that may still be opened
+
+	/**
+	* Loads every password shard from the working directory and opens the listening socket
+	* @param port the port to listen on
+	* @param maxConnections most connections served at the same time
+	* @param policy password policy the shards were generated with
+	* @param goodBits bitset of valid passwords used to answer CHECK without a trie walk, may be null
+	* @param sampler sampler used to answer RANDOM, already counted so workers only read it, may be null
+	* @param metrics metrics shard reads and CHECK latency are recorded in and METRICS answers with, may be null
+	* @throws IOException if a shard cannot be read or the port cannot be opened
+	**/
+	public ValidationServer(int port, int maxConnections, PasswordPolicy policy, PasswordBitset goodBits, PasswordSampler sampler, PasswordMetrics metrics) throws IOException{
+		this(null,port,maxConnections,policy,goodBits,sampler,metrics);
+	}
+
+	/**
+	* Loads every password shard and opens the listening socket
+	* The shard array is final and filled in the constructor, so every worker started later sees the complete tries
+	* @param directory directory holding the password shards, or null for the working directory
+	* @param port the port to listen on
+	* @param maxConnections most connections served at the same time
+	* @param policy password policy the shards were generated with
+	* @param goodBits bitset of valid passwords used to answer CHECK without a trie walk, may be null
+	* @param sampler sampler used to answer RANDOM, already counted so workers only read it, may be null
+	* @param metrics metrics shard reads and CHECK latency are recorded in and METRICS answers with, may be null
+	* @throws IOException if a shard cannot be read or the port cannot be opened
+	**/
+	public ValidationServer(File directory, int port, int maxConnections, PasswordPolicy policy, PasswordBitset goodBits, PasswordSampler sampler, PasswordMetrics metrics) throws IOException{
+		this.policy = policy;
+		this.goodBits = goodBits;
+		this.sampler = sampler;
+		this.metrics = metrics;
+		shards = new DlbTrie[128];
+		for(int i=0;i<policy.alphabetSize();i++){
+			if(!policy.isAllowed(i)){
+				continue;
+			}
+			char nextChar = policy.charAt(i);
+			String shard = new File(directory,policy.shardName(nextChar)).getPath();
+			if(new File(shard).exists()||new File(ShardCache.snapshotName(shard)).exists()||new File(ShardCache.compressedName(shard)).exists()){
+				long start = System.nanoTime();
+				shards[nextChar] = ShardCache.read(shard,policy.getAlphabet());
+				if(metrics!=null){
+					metrics.recordShardLoad(System.nanoTime()-start,shards[nextChar].size());
+				}
+			}
+		}
+		if(shards[policy.defaultShard()]==null){
+			throw new IOException("The "+policy.shardName(policy.defaultShard())+" password shard is missing.");
+		}
+		server = new ServerSocket(port);
+		workers = Executors.newCachedThreadPool();
+		connections = new Semaphore(maxConnections);
+	}
+
+	/**
+	* Returns the port the server is listening on, which was chosen by the system if it was created with port 0
+	* @return the local port
+	**/
+	public int getPort(){
+		return server.getLocalPort();
+	}
+
+	/**
+	* Stops accepting connections, serve returns once the socket is closed
+	* @throws IOException if the socket cannot be closed
+	**/
+	public void close() throws IOException{
+		server.close();
+	}
+
+	/**
+	* Accepts connections until the socket is closed, handing each to a thread of its own
+	* A connection past the limit is told so and closed at once, rather than waiting behind the open ones
+	* @throws IOException if accepting a connection fails
+	**/
+	public void serve() throws IOException{
+		try{
+			while(!server.isClosed()){
+				Socket client;
+				try{
+					client = server.accept();
+				}
+				catch(IOException e){
+					if(server.isClosed()){
+						return;
+					}
+					throw e;
+				}
+				if(connections.tryAcquire()){
+					workers.execute(new Connection(client));
+				}
+				else{
+					refuse(client);
+				}
+			}
+		}
+		finally{
+			workers.shutdown();
+			server.close();
+		}
+	}
+
+	/**
+	* Answers a connection past the limit with an error and closes it
+	* @param client the connected client
+	**/
+	private void refuse(Socket client){
+		try{
+			PrintWriter responses = new PrintWriter(new OutputStreamWriter(client.getOutputStream()));
+			responses.println("ERROR too many connections");
+			responses.flush();
+		}
+		catch(IOException e){
+			System.err.println("Connection error: "+e.getMessage());
+		}
+		finally{
+			try{
+				client.close();
+			}
+			catch(IOException e){
+				System.err.println("Error closing connection: "+e.getMessage());
+			}
+		}
+	}
+
+	/**
+	* Answers a single request line
+	* @param request the request, a command and a password separated by a space
+	* @return the response line
+	**/
+	String answer(String request){
+		if(request.equals("RANDOM")){
+			return sampler==null?"ERROR no dictionary to draw passwords from":sampler.next();
+		}
+		if(request.equals("METRICS")){
+			return metrics==null?"ERROR metrics are not being recorded":metrics.toJson();
+		}
+		int space = request.indexOf(' ');
+		if(space<0||space==request.length()-1){
+			return "ERROR expected CHECK or PREFIX followed by a password, or RANDOM or METRICS";
+		}
+		long start = System.nanoTime();
+		String command = request.substring(0,space);
+		String password = request.substring(space+1).toLowerCase();
+		DlbTrie root = shardTrie(password.charAt(0));
+
+		if(command.equals("CHECK")){
+			String response = goodBits!=null&&goodBits.contains(password)?"valid":pw_check.batchAnswer(root,policy,password);
+			if(metrics!=null){
+				metrics.recordQuery(System.nanoTime()-start,response.equals("valid"));
+			}
+			return response;
+		}
+		else if(command.equals("PREFIX")){
+			String attempt = password.length()>policy.getMaxLength()?password.substring(0,policy.getMaxLength()):password;
+			return Integer.toString(root.findPrefix(attempt,attempt.length()));
+		}
+		return "ERROR unknown command "+command;
+	}
+
+	/**
+	* Returns the trie for the shard holding passwords that start with a character
+	* @param firstChar first character of the password
+	* @return the shard trie, or the shard of the first allowed character if the character has none
+	**/
+	private DlbTrie shardTrie(char firstChar){
+		char shard = policy.shardFor(firstChar);
+		if(shards[shard]==null){
+			return shards[policy.defaultShard()];
+		}
+		return shards[shard];
+	}
+
+	/**
+	* Worker task answering every request on one client connection
+	**/
+	private class Connection implements Runnable{
+		private final Socket client; //the connected client
+
+		/**
+		* Creates the task for an accepted connection
+		* @param client the connected client
+		**/
+		Connection(Socket client){
+			this.client = client;
+		}
+
+		/**
+		* Reads requests and writes responses until the client quits or disconnects
+		**/
+		public void run(){
+			try{
+				BufferedReader requests = new BufferedReader(new InputStreamReader(client.getInputStream()));
+				PrintWriter responses = new PrintWriter(new BufferedWriter(new OutputStreamWriter(client.getOutputStream())));
+				String request;
+				while((request = requests.readLine())!=null&&!request.equals("QUIT")){
+					responses.println(answer(request));
+
+					//Only flushes once every pipelined request has been answered
+					if(!requests.ready()){
+						responses.flush();
+					}
+				}
+				responses.flush();
+			}
+			catch(IOException e){
+				System.err.println("Connection error: "+e.getMessage());
+			}
+			finally{
+				try{
+					client.close();
+				}
+				catch(IOException e){
+					System.err.println("Error closing connection: "+e.getMessage());
+				}
+				connections.release();
+			}
+		}
+	}
+}
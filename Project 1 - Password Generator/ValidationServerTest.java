@@ -0,0 +1,211 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+* Checks the validation server's answers and that idle connections do not hold up other clients
+* Writes a small password shard into a temporary directory and serves it, opens more idle connections than
+* the machine has processors, which was the old number of worker threads, then expects requests on one more
+* connection to be answered correctly, and a connection past the limit to be refused
+* Usage: java ValidationServerTest, exits with status 1 if a check fails
+* @author Jake Halloran
+* @version 1.0
+**/
+public class ValidationServerTest{
+	private static final int TIMEOUT = 5000; //milliseconds a response may take before the check fails
+	private static final String PASSWORDS[] = {"0bc!2","0bc!3","0bc@2","0bd!2"}; //sorted valid passwords of the shard
+
+	/**
+	* Runs the checks against a server on a free port
+	* @param args unused
+	**/
+	public static void main(String args[]){
+		int idle = 2*Runtime.getRuntime().availableProcessors()+1; //connections opened and left waiting
+		List<Client> clients = new ArrayList<Client>();
+		PasswordPolicy policy = PasswordPolicy.defaults();
+		File directory = null;
+		ValidationServer server = null;
+		boolean passed = true;
+		try{
+			//The shard must be one -g could write, or the checks would pass on passwords the policy rejects
+			for(String pass : PASSWORDS){
+				if(!policy.accepts(pass)){
+					throw new IOException("fixture password "+pass+" is not accepted by the policy");
+				}
+			}
+			directory = Files.createTempDirectory("pw_check").toFile();
+			writeShard(new File(directory,policy.shardName(policy.defaultShard())));
+			server = new ValidationServer(directory,0,idle+1,policy,null,null,null);
+			final ValidationServer running = server;
+			Thread accepter = new Thread(new Runnable(){
+				public void run(){
+					try{
+						running.serve();
+					}
+					catch(IOException e){
+						System.err.println("Server error: "+e.getMessage());
+					}
+				}
+			});
+			accepter.setDaemon(true);
+			accepter.start();
+
+			//Every idle client has answered a request, so each one has a thread of its own before the last connects
+			for(int i=0;i<idle;i++){
+				Client client = new Client(server.getPort());
+				clients.add(client);
+				passed &= check(client,"PREFIX 0bc!9","4");
+			}
+			Client last = new Client(server.getPort());
+			clients.add(last);
+			passed &= check(last,"CHECK 0bc!2","valid");
+			passed &= check(last,"PREFIX 0bc@2","5");
+
+			//An invalid password is answered with the closest valid ones
+			passed &= checkInvalid(last,"0bc!9","0bc!2");
+
+			//A password the policy rejects, using the forbidden 'a' and '1', is never valid
+			passed &= checkInvalid(last,"0ab!1","0bc!2");
+
+			//The limit is now reached, so one more connection is turned away
+			Client refused = new Client(server.getPort());
+			clients.add(refused);
+			passed &= check(refused,null,"ERROR too many connections");
+		}
+		catch(IOException e){
+			System.out.println("FAIL "+e.getMessage());
+			passed = false;
+		}
+		finally{
+			for(Client client : clients){
+				client.close();
+			}
+			if(server!=null){
+				try{
+					server.close();
+				}
+				catch(IOException e){
+					System.err.println("Error closing server: "+e.getMessage());
+				}
+			}
+			if(directory!=null){
+				for(File file : directory.listFiles()){
+					file.delete();
+				}
+				directory.delete();
+			}
+		}
+		System.out.println(passed?"ok "+idle+" idle connections did not block another client":"FAIL");
+		System.exit(passed?0:1);
+	}
+
+	/**
+	* Writes the test passwords as a text shard
+	* @param file the shard file
+	* @throws IOException if the file cannot be written
+	**/
+	private static void writeShard(File file) throws IOException{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		try{
+			for(String pass : PASSWORDS){
+				out.println(pass);
+			}
+		}
+		finally{
+			out.close();
+		}
+		if(out.checkError()){
+			throw new IOException("Error writing "+file+".");
+		}
+	}
+
+	/**
+	* Sends a request and checks the response
+	* @param client the connection
+	* @param request the request line, or null to only read
+	* @param response the expected response
+	* @return true if the expected response arrived in time
+	* @throws IOException if the connection fails
+	**/
+	private static boolean check(Client client, String request, String response) throws IOException{
+		String line = client.request(request);
+		if(!response.equals(line)){
+			System.out.println("FAIL "+request+" answered "+line);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	* Sends a CHECK request for a password that must be invalid and checks that a close valid password is suggested
+	* @param client the connection
+	* @param password the invalid password
+	* @param similar a valid password that must be among the suggestions
+	* @return true if the password was answered as invalid with the suggestion
+	* @throws IOException if the connection fails
+	**/
+	private static boolean checkInvalid(Client client, String password, String similar) throws IOException{
+		String reply = client.request("CHECK "+password);
+		if(reply==null||!reply.startsWith("invalid\t")||!Arrays.asList(reply.substring(8).split(",")).contains(similar)){
+			System.out.println("FAIL CHECK "+password+" answered "+reply);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	* One connection to the server, read through a single buffered reader so no response is lost between requests
+	**/
+	private static class Client{
+		private final Socket socket; //the connection
+		private final BufferedReader responses; //response lines
+		private final PrintWriter requests; //request lines
+
+		/**
+		* Connects to the server with a read timeout, so a request left waiting fails the check instead of hanging
+		* @param port the server's port
+		* @throws IOException if the connection cannot be made
+		**/
+		Client(int port) throws IOException{
+			socket = new Socket("127.0.0.1",port);
+			socket.setSoTimeout(TIMEOUT);
+			responses = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			requests = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+		}
+
+		/**
+		* Sends a request and reads its response
+		* @param request the request line, or null to only read
+		* @return the response line, or null if there was none in time
+		* @throws IOException if the connection fails
+		**/
+		String request(String request) throws IOException{
+			if(request!=null){
+				requests.println(request);
+				requests.flush();
+			}
+			try{
+				return responses.readLine();
+			}
+			catch(java.net.SocketTimeoutException e){
+				System.out.println("FAIL no response to "+request+" within "+TIMEOUT+" ms");
+				return null;
+			}
+		}
+
+		/**
+		* Closes the connection
+		**/
+		void close(){
+			try{
+				socket.close();
+			}
+			catch(IOException e){
+				System.err.println("Error closing connection: "+e.getMessage());
+			}
+		}
+	}
+}
@@ -4,7 +4,15 @@
 
 //Too lazy to import things independently
 import java.io.*;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import javax.management.JMException;
 
 /**
 *Password check class that creates and fills a DLB trie with correct passwords and validates user passwords.
@@ -14,40 +22,104 @@ public class pw_check{
 	//generic console input scanner
 	static Scanner input = new Scanner(System.in);
 	
+	//length, alphabet and character class limits, read from password_policy.txt if there is one
+	static PasswordPolicy policy;
+	
+	//loaded password shards, kept between queries until they use more than 256MB
+	static ShardCache shards;
+	
+	//generation and validation counters, readable over JMX while serving or validating and written as JSON with -m
+	static PasswordMetrics metrics = new PasswordMetrics();
+	
 	/**
 	*Calls other pw_check functions after verifying valid command line arguments
-	* @param args command line arguments to decide to generate or validate passwords
+	* @param args command line arguments to decide to generate or validate passwords, optionally led by -m and a file to write the metrics to
 	**/
 	public static void main(String args[]){
-		if(args.length==1&&args[0].equals("-g")){
+		String metricsFile = null; //file the metrics are written to once the command finishes
+		if(args.length>=2&&args[0].equals("-m")){
+			metricsFile = args[1];
+			args = Arrays.copyOfRange(args,2,args.length);
+		}
+		try{
+			policy = PasswordPolicy.read("password_policy.txt");
+		}
+		catch(IOException e){
+			System.out.println("Error reading password_policy.txt.");
+			return;
+		}
+		catch(IllegalArgumentException e){
+			System.out.println("Invalid password policy: "+e.getMessage());
+			return;
+		}
+		shards = new ShardCache(256L*1024*1024,policy.getAlphabet(),metrics);
+		
+		if(args.length>=1&&args[0].equals("-g")&&(args.length==1||(args.length==2&&args[1].equals("-p")))){
 			long startTime = System.nanoTime();
-			generatePasswords();
+			generatePasswords(args.length==2);
 			System.out.println("The list of passwords was generated in: "+(System.nanoTime()-startTime)+" ns.");
 		}
+		else if(args.length==1&&args[0].equals("-u")){
+			long startTime = System.nanoTime();
+			updatePasswords();
+			System.out.println("The passwords were updated in: "+(System.nanoTime()-startTime)+" ns.");
+		}
+		else if(args.length==1&&args[0].equals("-c")){
+			long startTime = System.nanoTime();
+			countPasswords();
+			System.out.println("The passwords were counted in: "+(System.nanoTime()-startTime)+" ns.");
+		}
+		else if(args.length==2&&args[0].equals("-r")){
+			samplePasswords(args[1]);
+		}
+		else if(args.length==2&&args[0].equals("-b")){
+			batchValidate(args[1]);
+		}
+		else if(args.length==2&&args[0].equals("-s")){
+			registerMetrics();
+			serve(args[1]);
+		}
 		else if(args.length>=1){
 			System.out.println("Invalid command line arguments.");
 		}
 		else{
+			registerMetrics();
 			validatePasswords();
 		}
+		
+		if(metricsFile!=null){
+			try{
+				metrics.writeJson(metricsFile);
+			}
+			catch(IOException e){
+				System.err.println("Error writing the metrics to "+metricsFile+".");
+			}
+		}
+	}
+	
+	/**
+	* Registers the metrics MBean so a long running server or validation session can be watched over JMX,
+	* one shot commands finish too quickly to be worth attaching to
+	**/
+	private static void registerMetrics(){
+		try{
+			metrics.register("pw_check:type=PasswordMetrics");
+		}
+		catch(JMException e){
+			System.err.println("Error registering the metrics MBean: "+e.getMessage());
+		}
 	}
 	
 	/**
 	*Generates the list of valid passwords by creating a DLB trie and filling it with invalid dictionary words.
+	*@param parallel whether to generate the password shards in parallel
 	**/
-	private static void generatePasswords(){
+	private static void generatePasswords(boolean parallel){
 		
-		int currentCharacters =0; //stores num characters in word currently tested
-		int currentSymbols =0; //stores num symbols in current word being tested
-		int currentNumbers =0; //stores num of numbers in current word being tested
-		int numWords =0; //word count flag to make root creation nice
-		DlbNode root = null; //reference to root of DLB trie
+		DlbTrie root = null; //reference to the dictionary DLB trie
 		
 		//Try to catch mandatory file io exceptions
 		try{
-			//Write invalid dictionary to file variable
-			PrintWriter my_dictionary = new PrintWriter(new BufferedWriter(new FileWriter("my_dictionary.txt")));
-		
 			//Stops user from regenerating good passwords if they already exist unless they want to repeat
 			File runPrev = new File("good_passwords.txt");
 			if(runPrev.exists()){
@@ -65,68 +137,30 @@ public class pw_check{
 				}
 			}
 			
-			//add dictionary words <= 5 chars in length to DLB tree
+			//Write invalid dictionary to file variable, only once the user has agreed to replace the last run's
+			PrintWriter my_dictionary = new PrintWriter(new BufferedWriter(new FileWriter("my_dictionary.txt")));
 			try{
-				String currentWord; //stores words as read from dictionary or generated to test
-				BufferedReader dictionary = new BufferedReader(new FileReader("dictionary.txt"));
+				//add dictionary words no longer than the longest password to DLB tree
+				root = readDictionary(my_dictionary);
 				
-				//Reads in each line one at a time
-				while ((currentWord = dictionary.readLine())!=null){
-					
-					//Throws away dictionary words of length greater than passwords can be
-					if(currentWord.length()>5){
-						continue;
-					}
-					
-					//append end of word flag
-					currentWord = currentWord.toLowerCase() + "^";
-					
-					//create root node if necessary
-					if (numWords==0){
-						root = new DlbNode(my_dictionary,true);
-						root.add(currentWord);
-						numWords++;
-					}
+				//Create my_dictionary.txt
+				try{
+					StringBuilder currentWord = new StringBuilder("");
+					root.writeTrie(currentWord); //simply calls writing function attached to the root node
+				}
 				
-					//otherwise add word to trie
-					else{
-						root.add(currentWord);
-					}
-					
-					//Adds substitute character prefixed words to trie
-					switch (currentWord.charAt(0)){
-						case 'a': root.add("4"+currentWord.substring(1)); break;
-						case 'e': root.add("3"+currentWord.substring(1)); break;
-						case 'i': root.add("1"+currentWord.substring(1)); break;
-						case 'l': root.add("1"+currentWord.substring(1)); break;
-						case 'o': root.add("0"+currentWord.substring(1)); break;
-						case 's': root.add("$"+currentWord.substring(1)); break;
-						case 't': root.add("7"+currentWord.substring(1)); break;
-					}
+				//Woo, even more io exception handling
+				catch(IOException e){
+					System.out.println("\nError writing my_dictionary.");
+					e.printStackTrace();
 				}
 			}
-			
-			//More file io exception handling
-			catch(IOException e){
-				System.out.println("Error reading dictionary file.");
-				e.printStackTrace();
-			}
-			
-			//Create my_dictionary.txt
-			try{
-				StringBuilder currentWord = new StringBuilder("");
-				root.writeTrie(currentWord); //simply calls writing function attached to the root node
+			finally{
 				my_dictionary.close(); //closes the dictionary so it will actually write
 			}
 			
-			//Woo, even more io exception handling
-			catch(IOException e){
-				System.out.println("\nError writing my_dictionary.");
-				e.printStackTrace();
-			}
-			
 			//Generates valid passwords from pw_check function
-			generate(root);
+			generate(root,parallel);
 			System.out.println("Valid passwords successfully generated.");
 		}
 		
@@ -137,16 +171,156 @@ public class pw_check{
 	}
 	
 	/**
-	*Uses functions attached to the DlbNode class to generate the list of valid passwords
-	*@param root root node of the trie containing the invalid word list
+	*Applies words added to dictionary.txt since the last -g to the generated password files
+	*Only passwords holding an added word are removed, so the shards are filtered instead of regenerated,
+	*words removed from the dictionary still need a full -g
 	**/
-	private static void generate(DlbNode root){
+	private static void updatePasswords(){
+		File words = new File("my_dictionary.txt");
+		if(!words.exists()||!new File("good_passwords.txt").exists()){
+			System.out.println("The program must first be run with the command flag -g.");
+			return;
+		}
+		File newWords = new File("my_dictionary.txt.new");
+		try{
+			//Writes the new word list beside the old one so they can be compared
+			PrintWriter my_dictionary = new PrintWriter(new BufferedWriter(new FileWriter(newWords)));
+			readDictionary(my_dictionary).writeTrie(new StringBuilder(""));
+			my_dictionary.close();
+			
+			DictionaryUpdate update = new DictionaryUpdate(policy,words.getPath(),newWords.getPath());
+			if(update.getRemoved()>0){
+				System.out.println(update.getRemoved()+" words were removed from the dictionary, run with the command flag -g to regenerate.");
+				return;
+			}
+			if(update.getAdded()==0){
+				System.out.println("The dictionary has not changed.");
+				return;
+			}
+			
+			//The bitset is updated in place if it is still in use
+			PasswordBitset goodBits = null;
+			if(policy.fitsBitset()&&new File("good_passwords.bits").exists()){
+				goodBits = new PasswordBitset("good_passwords.bits",policy,false,true);
+			}
+			long forbidden = update.apply(goodBits);
+			Files.move(newWords.toPath(),words.toPath(),StandardCopyOption.REPLACE_EXISTING);
+			System.out.println(update.getAdded()+" words were added to the dictionary, removing "+forbidden+" passwords from "+update.getChangedShards()+" shards.");
+		}
+		catch(IOException e){
+			System.out.println("Error updating passwords: "+e.getMessage());
+		}
+		finally{
+			newWords.delete();
+		}
+	}
+	
+	/**
+	*Reads the dictionary into a new DLB trie holding every word and its symbol substituted spellings
+	*The words are streamed through the dictionary pipeline, so even a dictionary larger than memory is loaded
+	*as sorted runs and built into the trie in one pass
+	*@param my_dictionary the output file writer the trie will be printed to, may be null if it is never printed
+	*@return the dictionary trie
+	*@throws IOException if the trie cannot be created
+	**/
+	private static DlbTrie readDictionary(PrintWriter my_dictionary) throws IOException{
+		try{
+			return new DictionaryPipeline(policy,1<<20).build("dictionary.txt",my_dictionary);
+		}
+		
+		//More file io exception handling, an empty trie is used in place of the dictionary
+		catch(IOException e){
+			System.out.println("Error reading dictionary file.");
+			e.printStackTrace();
+			return new DlbTrie(my_dictionary,false);
+		}
+	}
+	
+	/**
+	*Counts the valid passwords without generating them, for sizing a policy before running -g
+	**/
+	private static void countPasswords(){
+		try{
+			DlbTrie root = readDictionary(null);
+			DictionaryAutomaton automaton = new DictionaryAutomaton(root,policy);
+			BigInteger count = new PasswordCounter(policy,automaton).count();
+			System.out.println("There are "+count+" valid passwords of "+policy.lengthText()+" characters.");
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+		catch(IllegalArgumentException e){
+			System.out.println("Cannot count passwords: "+e.getMessage());
+		}
+	}
+	
+	/**
+	*Prints uniformly random valid passwords without generating the password list
+	*@param amount the number of passwords to print
+	**/
+	private static void samplePasswords(String amount){
+		try{
+			int remaining = Integer.parseInt(amount);
+			PasswordSampler sampler = newSampler();
+			PrintWriter passwords = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+			while(remaining-->0){
+				passwords.println(sampler.next());
+			}
+			passwords.flush();
+		}
+		catch(NumberFormatException e){
+			System.out.println("Invalid number of passwords "+amount+".");
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+		catch(IllegalArgumentException e){
+			System.out.println("Cannot draw passwords: "+e.getMessage());
+		}
+	}
+	
+	/**
+	*Builds a sampler of valid passwords from the dictionary and the policy
+	*@return the sampler, drawing with a SecureRandom since its passwords are handed out
+	*@throws IOException if the dictionary trie cannot be created
+	**/
+	private static PasswordSampler newSampler() throws IOException{
+		DlbTrie root = readDictionary(null);
+		return new PasswordSampler(policy,new DictionaryAutomaton(root,policy),new SecureRandom());
+	}
+	
+	/**
+	*Uses functions attached to the DlbTrie class to generate the list of valid passwords
+	*@param root the trie containing the invalid word list
+	*@param parallel whether to generate each first character's shard as its own fork/join task
+	**/
+	private static void generate(DlbTrie root, boolean parallel){
 		StringBuilder pass = new StringBuilder("");
 		try{
 			//opens the file to write to and calls the generation function attached to the root node
 			PrintWriter goodPass = new PrintWriter(new BufferedWriter(new FileWriter("good_passwords.txt")));
-			root.startGeneration(pass,0,0,0,goodPass);
+			
+			//Only fixed length policies with a small enough alphabet get a bitset, any older one is removed
+			PasswordBitset goodBits = null;
+			if(policy.fitsBitset()){
+				goodBits = new PasswordBitset("good_passwords.bits",policy,true);
+			}
+			else{
+				new File("good_passwords.bits").delete();
+			}
+			metrics.recordDictionary(root);
+			long startTime = System.nanoTime();
+			if(parallel){
+				root.startParallelGeneration(policy,goodPass,goodBits,Runtime.getRuntime().availableProcessors(),metrics);
+			}
+			else{
+				root.startGeneration(policy,pass,goodPass,goodBits,metrics);
+			}
+			metrics.recordGeneration(System.nanoTime()-startTime);
 			goodPass.close();
+			if(goodBits!=null){
+				goodBits.force();
+			}
 		}
 		
 		//More io exception handling, so exciting
@@ -160,8 +334,9 @@ public class pw_check{
 	*Reads valid passwords into the DLB trie and checks if user inputted passwords are valid
 	**/
 	private static void validatePasswords(){
-		DlbNode root = null; //root node of valid password trie
-		StringBuilder filename = new StringBuilder("0passwords.txt");
+		DlbTrie root = null; //root node of valid password trie
+		int maxLength = policy.getMaxLength(); //longest password allowed
+		PasswordBitset goodBits = null; //bitset of valid passwords, if one was generated
 
 		//Stops user from running if good passwords not exist
 		File runPrev = new File("good_passwords.txt");
@@ -169,16 +344,16 @@ public class pw_check{
 			System.out.println("The program must first be run with the command flag -g.");
 			System.exit(0);
 		}
+		
+		//Maps the bitset so valid passwords can be confirmed without loading their shard
+		goodBits = openBitset();
 			
 		String userInput = " "; //holds user password attempt
 		
 		//lets user test passwords until they enter 'q'
 		while(!userInput.equals("q")){
-			StringBuilder similarPrinter; //String builder for similar password generation
-			int prefixLength; //Stores longest prefix of userinput that is valid
-			
 			//Gets user password
-			System.out.print("\nEnter a 5 character password or a single 'q' to quit: ");
+			System.out.print("\nEnter a "+policy.lengthText()+" character password or a single 'q' to quit: ");
 			userInput = input.nextLine();
 			userInput = userInput.toLowerCase();
 			
@@ -194,181 +369,270 @@ public class pw_check{
 				System.out.println("The leading space on your password was removed.");
 				userInput = userInput.substring(1);
 			}
+			long startTime = System.nanoTime();
 			
-			//Loads the passwords matching the users input
-			root = null;
-			char firstChar = userInput.charAt(0);
-			if(firstChar=='a'||firstChar=='1'||firstChar=='4'||firstChar=='i'){
-				filename.setCharAt(0,'0');
-				root = loadPasswords(filename,root);
-			}
-			else if(firstChar=='*'){
-				filename.setCharAt(0,'+');
-				root = loadPasswords(filename,root);
+			//A set bit means the password is valid and there is nothing else to print
+			if(goodBits!=null&&goodBits.contains(userInput)){
+				System.out.println("Congratulations, "+userInput+ " is a valid password!");
+				metrics.recordQuery(System.nanoTime()-startTime,true);
+				continue;
 			}
-			else{
-				filename.setCharAt(0,firstChar);
-				root = loadPasswords(filename,root);
+			
+			//Without a bitset the front coded shard is searched instead, so only invalid passwords load a trie
+			if(goodBits==null&&policy.accepts(userInput)&&isStored(userInput)){
+				System.out.println("Congratulations, "+userInput+ " is a valid password!");
+				metrics.recordQuery(System.nanoTime()-startTime,true);
+				continue;
 			}
 			
+			//Loads the passwords matching the users input
+			root = loadPasswords(userInput.charAt(0));
+			
 			//if the user password is the right length, checks it
-			if(userInput.length()==5){
-				//finds longest prefix
-				prefixLength = root.findPrefix(userInput,5);
-				
-				//if the prefix is a valid password, tells the user they are awesome
-				if(prefixLength==5){
+			if(userInput.length()>=policy.getMinLength()&&userInput.length()<=maxLength){
+				//if the whole password is in the trie, tells the user they are awesome
+				if(root.contains(userInput)){
 					System.out.println("Congratulations, "+userInput+ " is a valid password!");
+					metrics.recordQuery(System.nanoTime()-startTime,true);
 				}
 				
 				//if the user's password is wrong, it tells them and gives alt passwords
 				else{
 					System.out.println("Sorry, "+userInput+" is not a valid password.\nSome valid password options are: ");
-				
-					//Sets the output to the longest valid prefix
-					if(prefixLength>1){
-						similarPrinter = new StringBuilder(userInput.substring(0,prefixLength-1));
-					}
-					
-					//longest prefix of 1 and 0 corner case handling
-					else if(prefixLength==1){						
-						similarPrinter = new StringBuilder(userInput.charAt(0));
-						System.out.println(similarPrinter);
-					}
-					else{
-						similarPrinter = new StringBuilder(0);
-					}
-					
-					int similar=root.findSimilar(userInput,similarPrinter,prefixLength,0); //counts the similar passwords for checking
-					
-					//Tells user if other passwords cannot be generated
-					if(similar==0){
-						System.out.println("Error Generating Similar Passwords.");
-					}
-					//Manually catches some strange error if the first 5 characters are a valid password
-					int i=0;
-					while(similar+i<10){
-						similarPrinter.setCharAt(3,(char)(i+48));
-						similarPrinter.setCharAt(4,root.getNextChar(i+37));
-						i++;
-						System.out.println(similarPrinter.substring(0,5));
-					}
+					printSuggestions(root,userInput);
+					metrics.recordQuery(System.nanoTime()-startTime,false);
 				}
 			}
 			
 			//If user password is too long, truncate and generate alternates
-			else if(userInput.length()>5){
-				System.out.println("Passwords must only be a maximum of 5 characters. \nHowever, your password will be truncated to 5 characters and checked.");
-				userInput=userInput.substring(0,5);
-				prefixLength = root.findPrefix(userInput,5);
-				int similar =0;
-
-				//Sets the output to the longest valid prefix
-				if(prefixLength==5){
-					similarPrinter = new StringBuilder(userInput.substring(0,3));
-					userInput = userInput.substring(0,4);
-				}
-				else if(prefixLength>1){
-					similarPrinter = new StringBuilder(userInput.substring(0,prefixLength-1));
-				}
-				
-				//longest prefix of 1 and 0 corner case handling
-				else if(prefixLength==1){
-					similarPrinter = new StringBuilder(userInput.charAt(0));
-				}
-				else{
-					similarPrinter = new StringBuilder(0);
-				}
-				
-				similar=root.findSimilar(userInput,similarPrinter,prefixLength,similar); //counts the similar passwords for checking
-				//Tells user if other passwords cannot be generated
-				if(similar==0){
-					System.out.println("Error Generating Similar Passwords.");
-				}
-				
-				//Manually catches some strange error if the first 5 characters are a valid password
-				int i=0;
-				while(similar+i<10){
-					similarPrinter.setCharAt(3,(char)(i+48));
-					similarPrinter.setCharAt(4,root.getNextChar(i+37));
-					i++;
-					System.out.println(similarPrinter.substring(0,5));
-				}
+			else if(userInput.length()>maxLength){
+				System.out.println("Passwords must only be a maximum of "+maxLength+" characters. \nHowever, your password will be truncated to "+maxLength+" characters and checked.");
+				printSuggestions(root,userInput.substring(0,maxLength));
+				metrics.recordQuery(System.nanoTime()-startTime,false);
 			}
 			
-			else if(userInput.length()<5){
-				System.out.println("Passwords must be 5 characters.\nSome valid similar passwords are: ");
-				prefixLength = root.findPrefix(userInput,userInput.length());
-				
-				//Sets the output to the longest valid prefix
-				if(prefixLength>1){
-					similarPrinter = new StringBuilder(userInput.substring(0,prefixLength-1));
+			else{
+				System.out.println("Passwords must be "+policy.lengthText()+" characters.\nSome valid similar passwords are: ");
+				printSuggestions(root,userInput);
+				metrics.recordQuery(System.nanoTime()-startTime,false);
+			}
+		}
+	}
+	
+	/**
+	* Prints the ten valid passwords closest to the user's attempt by edit distance
+	* @param root the trie of the attempt's shard
+	* @param userInput the password attempt
+	**/
+	private static void printSuggestions(DlbTrie root, String userInput){
+		List<String> similar = root.nearest(userInput,10,Math.max(userInput.length(),policy.getMaxLength()));
+		
+		//Tells user if other passwords cannot be generated
+		if(similar.isEmpty()){
+			System.out.println("Error Generating Similar Passwords.");
+		}
+		for(String password : similar){
+			System.out.println(password);
+		}
+	}
+	
+	/**
+	* Maps the valid password bitset if one was generated
+	* @return the bitset, or null if there is none, the policy cannot use one, or it cannot be read
+	**/
+	private static PasswordBitset openBitset(){
+		if(policy.fitsBitset()&&new File("good_passwords.bits").exists()){
+			try{
+				return new PasswordBitset("good_passwords.bits",policy,false);
+			}
+			catch(IOException e){
+				System.err.println("Error reading good_passwords.bits, it will not be used.");
+			}
+		}
+		return null;
+	}
+	
+	/**
+	* Checks every password in a file without prompting, writing one result line per password to stdout
+	* Valid passwords are written as "password	valid" and invalid ones as "password	invalid	similar1,similar2,..."
+	* Passwords are read in large chunks and each chunk is grouped by shard so every shard is looked up once per chunk,
+	* results are still written in input order
+	* @param source the file of passwords, one per line, or "-" to read them from stdin
+	**/
+	private static void batchValidate(String source){
+		final int CHUNK = 1<<16; //passwords grouped at a time
+		
+		//Stops user from running if good passwords not exist
+		if(!new File("good_passwords.txt").exists()){
+			System.err.println("The program must first be run with the command flag -g.");
+			System.exit(1);
+		}
+		PasswordBitset goodBits = openBitset();
+		
+		//Both streams are closed even if reading fails part way, so results already worked out are still written
+		try(BufferedReader passwords = new BufferedReader(source.equals("-")?new InputStreamReader(System.in):new FileReader(source),1<<16);
+			PrintWriter results = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out),1<<16))){
+			String chunk[] = new String[CHUNK];
+			String inputs[] = new String[CHUNK]; //the chunk's passwords lower cased with the leading space removed
+			String answers[] = new String[CHUNK];
+			int shardOf[] = new int[CHUNK];
+			int order[] = new int[CHUNK];
+			int read;
+			do{
+				//Reads a chunk, answering what the bitset can and noting the shard everything else needs
+				for(read=0;read<CHUNK&&(chunk[read] = passwords.readLine())!=null;read++){
+					long startTime = System.nanoTime();
+					String userInput = chunk[read].toLowerCase();
+					if(userInput.startsWith(" ")){
+						userInput = userInput.substring(1);
+					}
+					inputs[read] = userInput;
+					answers[read] = null;
+					shardOf[read] = -1;
+					if(userInput.length()==0){
+						answers[read] = "invalid";
+						metrics.recordQuery(System.nanoTime()-startTime,false);
+					}
+					else if(goodBits!=null&&goodBits.contains(userInput)){
+						answers[read] = "valid";
+						metrics.recordQuery(System.nanoTime()-startTime,true);
+					}
+					else{
+						shardOf[read] = policy.shardFor(userInput.charAt(0));
+					}
 				}
 				
-				//longest prefix of 1 and 0 corner case handling
-				else if(prefixLength==1){
-					similarPrinter = new StringBuilder(userInput.charAt(0));
+				//Counting sorts the remaining passwords by shard so each shard is fetched once
+				int starts[] = new int[129];
+				for(int i=0;i<read;i++){
+					if(shardOf[i]>=0){
+						starts[shardOf[i]+1]++;
+					}
 				}
-				else{
-					similarPrinter = new StringBuilder(0);
+				for(int c=0;c<128;c++){
+					starts[c+1] += starts[c];
 				}
-				
-				int similar=root.findSimilar(userInput,similarPrinter,prefixLength,0); //counts the similar passwords for checking
-					
-				//Tells user if other passwords cannot be generated
-				if(similar==0){
-					System.out.println("Error Generating Similar Passwords.");
+				int grouped = starts[128];
+				for(int i=0;i<read;i++){
+					if(shardOf[i]>=0){
+						order[starts[shardOf[i]]++] = i;
+					}
 				}
-				//Manually catches some strange error if the first 5 characters are a valid password
-				int i=0;
-				while(similar+i<10){
-					similarPrinter.setCharAt(3,(char)(i+48));
-					similarPrinter.setCharAt(4,root.getNextChar(i+37));
-					i++;
-					System.out.println(similarPrinter.substring(0,5));
+				DlbTrie root = null;
+				int lastShard = -1;
+				for(int g=0;g<grouped;g++){
+					int i = order[g];
+					if(shardOf[i]!=lastShard){
+						lastShard = shardOf[i];
+						root = loadPasswords((char)lastShard);
+					}
+					long startTime = System.nanoTime();
+					answers[i] = batchAnswer(root,policy,inputs[i]);
+					metrics.recordQuery(System.nanoTime()-startTime,answers[i].equals("valid"));
 				}
+				
+				//Writes the chunk back out in input order
+				for(int i=0;i<read;i++){
+					results.print(chunk[i]);
+					results.print('\t');
+					results.println(answers[i]);
+				}
+			}while(read==CHUNK);
+		}
+		catch(IOException e){
+			System.err.println("Error reading passwords from "+source+".");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	* Starts the validation server on a port and answers requests until the process is killed
+	* @param port the port number to listen on
+	**/
+	private static void serve(String port){
+		if(!new File("good_passwords.txt").exists()){
+			System.err.println("The program must first be run with the command flag -g.");
+			System.exit(1);
+		}
+		try{
+			//Passwords can only be handed out if the dictionary is there to build the sampler from
+			PasswordSampler sampler = null;
+			if(new File("dictionary.txt").exists()){
+				sampler = newSampler();
+			}
+			ValidationServer server = new ValidationServer(Integer.parseInt(port),ValidationServer.DEFAULT_CONNECTIONS,policy,openBitset(),sampler,metrics);
+			System.err.println("Validation server listening on port "+port+".");
+			server.serve();
+		}
+		catch(NumberFormatException e){
+			System.err.println("Invalid port number "+port+".");
+		}
+		catch(IOException e){
+			System.err.println("Error running the validation server.");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	* Checks one password against its shard for batch mode, following the same rules as the interactive checker
+	* @param root the trie of the password's shard
+	* @param policy password policy the shards were generated with
+	* @param userInput the password, already lower cased by the caller
+	* @return "valid", or "invalid" followed by a tab and the comma separated similar passwords
+	**/
+	static String batchAnswer(DlbTrie root, PasswordPolicy policy, String userInput){
+		//Only a whole password in the trie is valid
+		if(root.contains(userInput)){
+			return "valid";
+		}
+		
+		//Suggests the closest valid passwords to the attempt, truncated if it is too long
+		int maxLength = policy.getMaxLength();
+		String attempt = userInput.length()>maxLength?userInput.substring(0,maxLength):userInput;
+		List<String> similar = root.nearest(attempt,10,maxLength);
+		StringBuilder answer = new StringBuilder("invalid\t");
+		for(int i=0;i<similar.size();i++){
+			if(i>0){
+				answer.append(',');
 			}
+			answer.append(similar.get(i));
+		}
+		return answer.toString();
+	}
+	
+	/**
+	* Checks whether a password is in its shard without loading the shard's trie
+	* @param userInput the password, which must be in the policy alphabet and of a valid length
+	* @return true if the password is valid, false if it is not or its shard cannot be read
+	**/
+	private static boolean isStored(String userInput){
+		try{
+			return shards.contains(policy.shardName(policy.shardFor(userInput.charAt(0))),userInput);
+		}
+		catch(IOException e){
+			return false;
 		}
 	}
 	
 	/**
 	* Loads the proper passwords into the DLB trie for analysis
-	* @param filename the name of the file that will be loaded into the DLB
-	* @param root The root node of the DLB trie
-	* @return reference to the root node of the trie
+	* Shards are served from the shard cache, so a file is only read again after it has been evicted
+	* @param firstChar the first character of the password, which picks the shard that will be loaded into the DLB
+	* @return reference to the loaded trie
 	**/
-	private static DlbNode loadPasswords(StringBuilder filename, DlbNode root){
+	private static DlbTrie loadPasswords(char firstChar){
+		char shard = policy.shardFor(firstChar);
 		try{
-			BufferedReader goodPasswords = new BufferedReader(new FileReader(filename.toString())); //password file reader
-			int numWords =0; //Variable to stop tree initialization in while loop
-			String currentWord; //current trie word to be added
-			while ((currentWord = goodPasswords.readLine())!=null){
-				//append end of word flag
-					currentWord = currentWord.toLowerCase() + "+";
-					//create root node if necessary
-					if (numWords==0){
-						//creates a new root with valid flags
-						root = new DlbNode(null,false);
-						root.add(currentWord);
-						numWords++;
-					}
-				
-					//otherwise add word to trie
-					else{
-						root.add(currentWord);
-					}
-			}
-			
+			return shards.get(policy.shardName(shard));
 		}
 		
 		//If the user's first symbol is not valid, loads default passwords to print similar passwords
 		catch (IOException e){
-			filename.setCharAt(0,'0');
-			root=null;
-			root = loadPasswords(filename,root);
+			if(shard==policy.defaultShard()){
+				System.err.println("Error reading "+policy.shardName(shard)+", run with the command flag -g again.");
+				System.exit(1);
+			}
+			return loadPasswords(policy.defaultShard());
 		}
-		
-		//Returns the root node reference
-		return root;
 	}
-}
\ No newline at end of file
+}
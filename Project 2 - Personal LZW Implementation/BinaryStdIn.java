@@ -35,18 +35,39 @@ public final class BinaryStdIn {
     private static BufferedInputStream in = new BufferedInputStream(System.in);
     private static final int EOF = -1;    // end of file
 
-    private static int buffer;            // one character buffer
+    private static final byte[] block = new byte[1 << 16];  // bytes read from standard input in one large read
+    private static int blockPos;          // index of the next byte of block to move into buffer
+    private static int blockEnd;          // number of bytes read into block
+    private static boolean eof;           // true once standard input has no more bytes
+    private static long buffer;           // 64-bit accumulator, the next N bits to read are its low bits
     private static int N;                 // number of bits left in buffer
 
-    // static initializer
-    static { fillBuffer(); }
-
     // don't instantiate
     private BinaryStdIn() { }
 
+    // move whole bytes into the accumulator until it holds more than 56 bits or the input runs out
     private static void fillBuffer() {
-        try { buffer = in.read(); N = 8; }
-        catch (IOException e) { System.out.println("EOF"); buffer = EOF; N = -1; }
+        while (N <= 56) {
+            if (blockPos == blockEnd) {
+                if (eof) return;
+                int n;
+                try { n = in.read(block); }
+                catch (IOException e) { System.out.println("EOF"); n = EOF; }
+                blockPos = 0;
+                blockEnd = Math.max(n, 0);
+                if (n == EOF) { eof = true; return; }
+            }
+            buffer = (buffer << 8) | (block[blockPos++] & 0xff);
+            N += 8;
+        }
+    }
+
+    // read the next r bits, 1 <= r <= 32, with a single shift and mask of the accumulator
+    private static int readBits(int r) {
+        if (N < r) fillBuffer();
+        if (N < r) throw new RuntimeException("Reading from empty input stream");
+        N -= r;
+        return (int) ((buffer >>> N) & ((1L << r) - 1));
     }
 
    /**
@@ -67,7 +88,8 @@ public final class BinaryStdIn {
      * @return true if and only if standard input is empty
      */
     public static boolean isEmpty() {
-        return buffer == EOF;
+        if (N == 0) fillBuffer();
+        return N == 0;
     }
 
    /**
@@ -76,11 +98,7 @@ public final class BinaryStdIn {
      * @throws RuntimeException if standard input is empty
      */
     public static boolean readBoolean() {
-        if (isEmpty()) throw new RuntimeException("Reading from empty input stream");
-        N--;
-        boolean bit = ((buffer >> N) & 1) == 1;
-        if (N == 0) fillBuffer();
-        return bit;
+        return readBits(1) == 1;
     }
 
    /**
@@ -91,26 +109,7 @@ public final class BinaryStdIn {
      * @throws RuntimeException if there are fewer than 8 bits available on standard input
      */
     public static char readChar() {
-        if (isEmpty()) throw new RuntimeException("Reading from empty input stream");
-
-        // special case when aligned byte
-        if (N == 8) {
-            int x = buffer;
-            fillBuffer();
-            return (char) (x & 0xff);
-        }
-
-        // combine last N bits of current buffer with first 8-N bits of new buffer
-        int x = buffer;
-        x <<= (8-N);
-        int oldN = N;
-        fillBuffer();
-        if (isEmpty()) throw new RuntimeException("Reading from empty input stream");
-        N = oldN;
-        x |= (buffer >>> N);
-        return (char) (x & 0xff);
-        // the above code doesn't quite work for the last character if N = 8
-        // because buffer will be -1
+        return (char) readBits(8);
     }
 
    /**
@@ -123,16 +122,7 @@ public final class BinaryStdIn {
     public static char readChar(int r) {
         if (r < 1 || r > 16) throw new IllegalArgumentException("Illegal value of r = " + r);
 
-        // optimize r = 8 case
-        if (r == 8) return readChar();
-
-        char x = 0;
-        for (int i = 0; i < r; i++) {
-            x <<= 1;
-            boolean bit = readBoolean();
-            if (bit) x |= 1;
-        }
-        return x;
+        return (char) readBits(r);
     }
 
    /**
@@ -153,19 +143,37 @@ public final class BinaryStdIn {
     }
 
 
+   /**
+     * Read up to <tt>len</tt> bytes from standard input into an array.
+     * @param b the array to read into
+     * @param off index in <tt>b</tt> of the first byte read
+     * @param len most bytes to read, at least 1
+     * @return the number of bytes read, or -1 if standard input is empty
+     * @throws RuntimeException if the bits available on standard input are not byte-aligned
+     */
+    public static int read(byte[] b, int off, int len) {
+        if (isEmpty()) return -1;
+        if (N % 8 != 0) throw new RuntimeException("Reading bytes from input stream that is not byte-aligned");
+
+        // the bytes already in the accumulator come first, then the rest of the block
+        int n = 0;
+        while (N > 0 && n < len) {
+            N -= 8;
+            b[off + n++] = (byte) (buffer >>> N);
+        }
+        int copy = Math.min(len - n, blockEnd - blockPos);
+        System.arraycopy(block, blockPos, b, off + n, copy);
+        blockPos += copy;
+        return n + copy;
+    }
+
    /**
      * Read the next 16 bits from standard input and return as a 16-bit short.
      * @return the next 16 bits of data from standard input as a <tt>short</tt>
      * @throws RuntimeException if there are fewer than 16 bits available on standard input
      */
     public static short readShort() {
-        short x = 0;
-        for (int i = 0; i < 2; i++) {
-            char c = readChar();
-            x <<= 8;
-            x |= c;
-        }
-        return x;
+        return (short) readBits(16);
     }
 
    /**
@@ -174,13 +182,7 @@ public final class BinaryStdIn {
      * @throws RuntimeException if there are fewer than 32 bits available on standard input
      */
     public static int readInt() {
-        int x = 0;
-        for (int i = 0; i < 4; i++) {
-            char c = readChar();
-            x <<= 8;
-            x |= c;
-        }
-        return x;
+        return readBits(32);
     }
 
    /**
@@ -193,16 +195,7 @@ public final class BinaryStdIn {
     public static int readInt(int r) {
         if (r < 1 || r > 32) throw new IllegalArgumentException("Illegal value of r = " + r);
 
-        // optimize r = 32 case
-        if (r == 32) return readInt();
-
-        int x = 0;
-        for (int i = 0; i < r; i++) {
-            x <<= 1;
-            boolean bit = readBoolean();
-            if (bit) x |= 1;
-        }
-        return x;
+        return readBits(r);
     }
 
    /**
@@ -32,23 +32,32 @@ import java.io.IOException;
 public final class BinaryStdOut {
     private static BufferedOutputStream out = new BufferedOutputStream(System.out);
 
-    private static int buffer;     // 8-bit buffer of bits to write out
-    private static int N;          // number of bits remaining in buffer
+    private static final byte[] block = new byte[1 << 16];  // whole bytes waiting to be written in one large write
+    private static int blockEnd;   // number of bytes in block
+    private static long buffer;    // 64-bit accumulator, its last N bits have not been moved to block yet
+    private static int N;          // number of bits remaining in buffer, always less than 8 between writes
 
     // don't instantiate
     private BinaryStdOut() { }
 
+   /**
+     * Write the r low bits of x, 1 <= r <= 32, moving every whole byte into the block.
+     */
+    private static void writeBits(int x, int r) {
+        buffer = (buffer << r) | (x & ((1L << r) - 1));
+        N += r;
+        while (N >= 8) {
+            if (blockEnd == block.length) clearBlock();
+            N -= 8;
+            block[blockEnd++] = (byte) (buffer >>> N);
+        }
+    }
+
    /**
      * Write the specified bit to standard output.
      */
     private static void writeBit(boolean bit) {
-        // add bit to buffer
-        buffer <<= 1;
-        if (bit) buffer |= 1;
-
-        // if buffer is full (8 bits), write out as a single byte
-        N++;
-        if (N == 8) clearBuffer();
+        writeBits(bit ? 1 : 0, 1);
     } 
 
    /**
@@ -56,37 +65,30 @@ public final class BinaryStdOut {
      */
     private static void writeByte(int x) {
         assert x >= 0 && x < 256;
-
-        // optimized if byte-aligned
-        if (N == 0) {
-            try { out.write(x); }
-            catch (IOException e) { e.printStackTrace(); }
-            return;
-        }
-
-        // otherwise write one bit at a time
-        for (int i = 0; i < 8; i++) {
-            boolean bit = ((x >>> (8 - i - 1)) & 1) == 1;
-            writeBit(bit);
-        }
+        writeBits(x, 8);
     }
 
-    // write out any remaining bits in buffer to standard output, padding with 0s
+    // write out any remaining bits in buffer to the block, padding with 0s
     private static void clearBuffer() {
         if (N == 0) return;
-        if (N > 0) buffer <<= (8 - N);
-        try { out.write(buffer); }
-        catch (IOException e) { e.printStackTrace(); }
-        N = 0;
+        writeBits(0, 8 - N);
         buffer = 0;
     }
 
+    // write out the bytes in the block to standard output
+    private static void clearBlock() {
+        try { out.write(block, 0, blockEnd); }
+        catch (IOException e) { e.printStackTrace(); }
+        blockEnd = 0;
+    }
+
    /**
      * Flush standard output, padding 0s if number of bits written so far
      * is not a multiple of 8.
      */
     public static void flush() {
         clearBuffer();
+        clearBlock();
         try { out.flush(); }
         catch (IOException e) { e.printStackTrace(); }
     }
@@ -123,10 +125,7 @@ public final class BinaryStdOut {
      * @param x the <tt>int</tt> to write.
      */
     public static void write(int x) {
-        writeByte((x >>> 24) & 0xff);
-        writeByte((x >>> 16) & 0xff);
-        writeByte((x >>>  8) & 0xff);
-        writeByte((x >>>  0) & 0xff);
+        writeBits(x, 32);
     }
 
    /**
@@ -140,10 +139,7 @@ public final class BinaryStdOut {
         if (r == 32) { write(x); return; }
         if (r < 1 || r > 32)        throw new IllegalArgumentException("Illegal value for r = " + r);
         if (x < 0 || x >= (1 << r)) throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
-        for (int i = 0; i < r; i++) {
-            boolean bit = ((x >>> (r - i - 1)) & 1) == 1;
-            writeBit(bit);
-        }
+        writeBits(x, r);
     }
 
 
@@ -186,8 +182,7 @@ public final class BinaryStdOut {
      * @param x the <tt>short</tt> to write.
      */
     public static void write(short x) {
-        writeByte((x >>>  8) & 0xff);
-        writeByte((x >>>  0) & 0xff);
+        writeBits(x, 16);
     }
 
    /**
@@ -211,10 +206,30 @@ public final class BinaryStdOut {
         if (r == 8) { write(x); return; }
         if (r < 1 || r > 16)        throw new IllegalArgumentException("Illegal value for r = " + r);
         if (x < 0 || x >= (1 << r)) throw new IllegalArgumentException("Illegal " + r + "-bit char = " + x);
-        for (int i = 0; i < r; i++) {
-            boolean bit = ((x >>> (r - i - 1)) & 1) == 1;
-            writeBit(bit);
+        writeBits(x, r);
+    }
+
+   /**
+     * Write <tt>len</tt> bytes of an array to standard output.
+     * @param b the array holding the bytes.
+     * @param off index in <tt>b</tt> of the first byte to write.
+     * @param len the number of bytes to write.
+     */
+    public static void write(byte[] b, int off, int len) {
+        // optimized if byte-aligned, copied straight into the block
+        if (N == 0) {
+            while (len > 0) {
+                if (blockEnd == block.length) clearBlock();
+                int copy = Math.min(len, block.length - blockEnd);
+                System.arraycopy(b, off, block, blockEnd, copy);
+                blockEnd += copy;
+                off += copy;
+                len -= copy;
+            }
+            return;
         }
+        for (int i = off; i < off + len; i++)
+            writeByte(b[i] & 0xff);
     }
 
    /**
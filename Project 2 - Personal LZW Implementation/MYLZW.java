@@ -5,59 +5,56 @@
 **/
 
 import java.io.*;
+import java.util.Arrays;
 public class MYLZW {
     private static final int R = 256;        // number of input chars
     private static int L;      			     // number of codewords = 2^W
     private static int W;      			     // codeword width
 	
     public static void compress(){ //do nothing mode compress
-        String input = BinaryStdIn.readString();
-        TST<Integer> st = new TST<Integer>();
-        for (int i = 0; i < R; i++)
-            st.put("" + (char) i, i);
+        ByteInput input = new ByteInput(); //streams the input in large chunks
+        CodeTable st = new CodeTable(); //codewords past R, keyed by prefix codeword and next byte
         int code = R+1;  // R is codeword for EOF
+        int next = input.read(); //first byte not yet matched, -1 at the end of the input
 
-        while (input.length() > 0) {
+        while (next >= 0) {
 			//Expand codebook when necessary and eligible
 			if(W<16 && code == L){
 				W++;
 				L *=2;
 			}
-            String s = st.longestPrefixOf(input);  // Find max prefix match s.
-            BinaryStdOut.write(st.get(s), W);  // Print s's encoding.
-            int t = s.length();
-            if (t < input.length() && code < L)    // Add s to symbol table.
-                st.put(input.substring(0, t + 1), code++);
-            input = input.substring(t);            // Scan past s in input.
+            int s = next;                          // Find max prefix match s a byte at a time.
+            while ((next = input.read()) >= 0) {
+                int longer = st.get(s, next);
+                if (longer < 0) break;
+                s = longer;
+            }
+            BinaryStdOut.write(s, W);  // Print s's encoding.
+            if (next >= 0 && code < L)    // Add s and the byte after it to symbol table.
+                st.put(s, next, code++);
         }
         BinaryStdOut.write(R, W);
         BinaryStdOut.close();
     } 
 
     public static void expand() { //do nothing mode expand
-        String[] st = new String[65536];
-        int i; // next available codeword value
-
-        // initialize symbol table with all 1-character strings
-        for (i = 0; i < R; i++)
-            st[i] = "" + (char) i;
-        st[i++] = "";                        // (unused) lookahead for EOF
+        DecodeTable st = new DecodeTable(); //codebook of prefix codewords and last bytes
+        int i = R+1; // next available codeword value, R is the codeword for EOF
 
         int codeword = BinaryStdIn.readInt(W);
         if (codeword == R) return;           // expanded message is empty string
-        String val = st[codeword];
+        int val = st.load(codeword, R);
 
         while (true) {
-            BinaryStdOut.write(val);
+            st.write();
             codeword = BinaryStdIn.readInt(W);
             if (codeword == R) break;
-            String s = st[codeword];
-            if (i == codeword) s = val + val.charAt(0);   // special case hack
-            if (i < L) st[i++] = val + s.charAt(0);
-            val = s;
+            st.load(codeword, i);            // s = val + val.charAt(0) when codeword is the one being added
+            if (i < L) st.add(i++, val);
+            val = codeword;
 			
 			//Expand codebook one early when elligible
-			if(W<16 && i==(Math.pow(2,W))-1){
+			if(W<16 && i==(1<<W)-1){
 				W++;
 				L *= 2;
 			}
@@ -98,15 +95,14 @@ public class MYLZW {
 	}
 	
 	private static void resetCompress(){ //reset mode compress
-		String input = BinaryStdIn.readString(); //reads input file to string
+		ByteInput input = new ByteInput(); //streams the input in large chunks
 		
-		//Starts initial codebook
-        TST<Integer> st = new TST<Integer>();
-        for (int i = 0; i < R; i++)
-            st.put("" + (char) i, i);
+		//Starts initial codebook, single bytes are their own codewords so only longer strings are stored
+        CodeTable st = new CodeTable();
         int code = R+1;  // R is codeword for EOF
+        int next = input.read(); //first byte not yet matched, -1 at the end of the input
 
-        while (input.length() > 0) {
+        while (next >= 0) {
 			//Expands codebook when necessary
 			if(W<16 && code == L){
 				W++;
@@ -117,18 +113,19 @@ public class MYLZW {
 			else if(W==16 && code == L){
 				W = 9;
 				L = 512;
-				st = new TST<Integer>();
-				for (int i = 0; i < R; i++)
-					st.put("" + (char) i, i);
+				st.clear();
 				code = R+1;  // R is codeword for EOF
 			}
 			
-            String s = st.longestPrefixOf(input);  // Find max prefix match s.
-            BinaryStdOut.write(st.get(s), W);  // Print s's encoding.
-            int t = s.length();
-            if (t < input.length() && code < L)    // Add s to symbol table.
-                st.put(input.substring(0, t + 1), code++);
-            input = input.substring(t);            // Scan past s in input.
+            int s = next;                          // Find max prefix match s a byte at a time.
+            while ((next = input.read()) >= 0) {
+                int longer = st.get(s, next);
+                if (longer < 0) break;
+                s = longer;
+            }
+            BinaryStdOut.write(s, W);  // Print s's encoding.
+            if (next >= 0 && code < L)    // Add s and the byte after it to symbol table.
+                st.put(s, next, code++);
         }
         BinaryStdOut.write(R, W);
         BinaryStdOut.close();
@@ -136,22 +133,21 @@ public class MYLZW {
 	
 	private static void monitorCompress() { //monitor mode compress
 		boolean monitorFlag = false; //flag to check if ratio of ratios is bad enough to reset
-		int readDataCount = 0; 
-		int outputDataCount = 0;
+		long readDataCount = 0; //bits of input consumed, long so inputs past 256MB do not overflow
+		long outputDataCount = 0;
 		double monitorRatio = 1.0;
 		double currentRatio = 1.0;
 		int count = 0;
 		int waitCount = 0;
 		
-		String input = BinaryStdIn.readString(); //string containing file data
+		ByteInput input = new ByteInput(); //streams the input in large chunks
 		
-		//Initializes codebook
-        TST<Integer> st = new TST<Integer>();
-        for (int i = 0; i < R; i++)
-            st.put("" + (char) i, i);
+		//Initializes codebook, single bytes are their own codewords so only longer strings are stored
+        CodeTable st = new CodeTable();
         int code = R+1;  // R is codeword for EOF
+        int next = input.read(); //first byte not yet matched, -1 at the end of the input
 		
-        while (input.length() > 0) {
+        while (next >= 0) {
 			//Expand code book
 			if(W<16 && code == L){
 				W++;
@@ -167,9 +163,7 @@ public class MYLZW {
 			else if(W==16 && code == L && monitorFlag && monitorRatio/currentRatio>=1.1){
 				W = 9;
 				L = 512;
-				st = new TST<Integer>();
-				for (int i = 0; i < R; i++)
-					st.put("" + (char) i, i);
+				st.clear();
 				code = R+1;  // R is codeword for EOF
 				
 				//Reset monitor mode special flags and data
@@ -177,15 +171,20 @@ public class MYLZW {
 				monitorFlag = false;
 			}
 			
-            String s = st.longestPrefixOf(input);  // Find max prefix match s.
-			readDataCount += s.length() * 8; //add 8bits * input length to read data
-            BinaryStdOut.write(st.get(s), W);  // Print s's encoding.
+            int s = next;                          // Find max prefix match s a byte at a time.
+            int t = 1;                             // length of s
+            while ((next = input.read()) >= 0) {
+                int longer = st.get(s, next);
+                if (longer < 0) break;
+                s = longer;
+                t++;
+            }
+			readDataCount += t * 8; //add 8bits * input length to read data
+            BinaryStdOut.write(s, W);  // Print s's encoding.
 			outputDataCount+= W; //add codeword size to written data
 			count++; //counting flag for testing purposes
-            int t = s.length();
-            if (t < input.length() && code < L)    // Add s to symbol table.
-                st.put(input.substring(0, t + 1), code++);
-            input = input.substring(t);            // Scan past s in input.
+            if (next >= 0 && code < L)    // Add s and the byte after it to symbol table.
+                st.put(s, next, code++);
 			
 			currentRatio = (double)readDataCount/outputDataCount; //set current ratio of total length read *8 / total size of all codewords written
         }
@@ -195,120 +194,100 @@ public class MYLZW {
 	}
 	
 	private static void resetExpand() { //reset mode expand
-		String[] st = new String[65536];
-        int i; // next available codeword value
-
-        // initialize symbol table with all 1-character strings
-        for (i = 0; i < R; i++)
-            st[i] = "" + (char) i;
-        st[i++] = "";                        // (unused) lookahead for EOF
+		DecodeTable st = new DecodeTable(); //codebook of prefix codewords and last bytes
+        int i = R+1; // next available codeword value, R is the codeword for EOF
 
         int codeword = BinaryStdIn.readInt(W);
         if (codeword == R) return;           // expanded message is empty string
-        String val = st[codeword];
+        int val = st.load(codeword, R);
 
         while (true) {
 			//Read and write data
-            BinaryStdOut.write(val);
+            st.write();
             codeword = BinaryStdIn.readInt(W);
             if (codeword == R) break;
-            String s = st[codeword];
-            if (i == codeword) s = val + val.charAt(0);   // special case hack
-            if (i < L) st[i++] = val + s.charAt(0);
-            val = s;
+            st.load(codeword, i);            // s = val + val.charAt(0) when codeword is the one being added
+            if (i < L) st.add(i++, val);
+            val = codeword;
 			
 			//Expand codebook one early when needed
-			if(W<16 && i==(Math.pow(2,W))-1){
+			if(W<16 && i==(1<<W)-1){
 				W++;
 				L *= 2;
 			}
 			
-			//Throw away codebook if full
-			if(W==16 && i==(Math.pow(2,W))-1){
+			//Throw away codebook if full, single bytes never change so only the next codeword is reset
+			if(W==16 && i==(1<<W)-1){
 				W = 9;
 				L = 512;
-				st = new String[65536];
-				for (i = 0; i < R; i++)
-					st[i] = "" + (char) i;
-				st[i++] = "";  
-				BinaryStdOut.write(val);
+				i = R+1;
+				st.write();
 				codeword = BinaryStdIn.readInt(W);
-				if (codeword == R) return;           // expanded message is empty string
-				val = st[codeword];
+				if (codeword == R) break;           // nothing follows the reset
+				val = st.load(codeword, R);
 			}
         }
         BinaryStdOut.close();
 	}
 	
 	private static void monitorExpand() { //monitor mode expand
-		String[] st = new String[65536];
+		DecodeTable st = new DecodeTable(); //codebook of prefix codewords and last bytes
 		boolean monitorFlag = false; //flag to track if monitor mode is engaged
-		int readDataCount = 0;
-		int outputDataCount = 0;
+		long readDataCount = 0; //bits of codewords read, long so archives past 256MB do not overflow
+		long outputDataCount = 0;
 		double monitorRatio = 0.0; //base ratio
 		double currentRatio = 0.0; //current output/input ratio
 		int count =0;
-        int i; // next available codeword value
-
-        // initialize symbol table with all 1-character strings
-        for (i = 0; i < R; i++)
-            st[i] = "" + (char) i;
-        st[i++] = "";                        // (unused) lookahead for EOF
+        int i = R+1; // next available codeword value, R is the codeword for EOF
 
         int codeword = BinaryStdIn.readInt(W);
 		readDataCount += W;
         if (codeword == R) return;           // expanded message is empty string
-        String val = st[codeword];
+        int val = st.load(codeword, R);
 		
 
         while (true) {
 			//Read and write data as well as track input and output sizes in bits
-			try{BinaryStdOut.write(val);}
-			catch(NullPointerException e){System.err.println("Error writing to file. Exiting."); break;}
-			outputDataCount += val.length() * 8;
+			st.write();
+			outputDataCount += st.size() * 8;
 			codeword = BinaryStdIn.readInt(W);
 			readDataCount += W;		
 			count++;
 			
 			//Code to increment to next word properly
             if (codeword == R) { break;}
-            String s = st[codeword];
-            if (i == codeword) s = val + val.charAt(0);   // special case hack
-			if (i < L) {st[i++] = val + s.charAt(0); }
-            val = s;
+            st.load(codeword, i);            // s = val + val.charAt(0) when codeword is the one being added
+			if (i < L) {st.add(i++, val); }
+            val = codeword;
 			
 			//Expand codebook one early when able
-			if(W<16 && i==(Math.pow(2,W))-1){
+			if(W<16 && i==(1<<W)-1){
 				W++;
 				L *= 2;
 			}
 			
 			//Start monitoring when the codebook is full
-			else if(W==16 && i==(Math.pow(2,W)) && !monitorFlag){
+			else if(W==16 && i==(1<<W) && !monitorFlag){
 				monitorFlag = true;
 				monitorRatio = currentRatio;
 			}
 			
 			//if monitoring and ratio has degraded, reset the codebook
 			if(monitorFlag && monitorRatio/currentRatio >= 1.1){
-				//Reset and refill length variables and initial array
+				//Reset length variables, single bytes never change so only the next codeword is reset
 				W = 9;
 				L = 512;
-				i = 0;
-				st = new String[65536];
-				for (i = 0; i < R; i++)
-					st[i] = "" + (char) i;
-				st[i++] = "";  
+				i = R+1;
 				
 				//write old word
-				BinaryStdOut.write(val);
-				outputDataCount += val.length()*8;
+				st.write();
+				outputDataCount += st.size()*8;
 				
 				//Read next word
 				codeword = BinaryStdIn.readInt(W);
 				readDataCount += W;
-				if (codeword == R) return;           // expanded message is empty string
-				val = st[codeword];
+				if (codeword == R) break;           // nothing follows the reset
+				val = st.load(codeword, R);
 				count++;
 				monitorFlag = false;
 			}
@@ -318,4 +297,172 @@ public class MYLZW {
         }
         BinaryStdOut.close();
 	}
-}
\ No newline at end of file
+	
+	/**
+	* Expansion codebook holding each string as the codeword of the string one byte shorter, its last byte
+	* and its length, so adding a codeword never builds a string
+	* Strings are spelled out by following the prefix codewords back from the last byte into one reusable buffer
+	**/
+	private static class DecodeTable{
+		private final int prefix[] = new int[1<<16]; //codeword of each string without its last byte
+		private final byte last[] = new byte[1<<16]; //last byte of each string
+		private final int length[] = new int[1<<16]; //length of each string
+		private final byte buffer[] = new byte[(1<<16)+1]; //the string last loaded, a codeword stands for at most 65536 bytes
+		private int size; //length of the string in the buffer
+		
+		/**
+		* Creates the codebook of every single byte string
+		**/
+		DecodeTable(){
+			for(int c=0;c<R;c++){
+				last[c] = (byte)c;
+				length[c] = 1;
+			}
+		}
+		
+		/**
+		* Spells out the string of a codeword into the buffer
+		* The codeword about to be added stands for the string in the buffer followed by its own first byte,
+		* which is spelled out by appending that byte
+		* @param codeword the codeword read
+		* @param next the codeword about to be added, or R for the first codeword after the codebook starts
+		* @return the codeword
+		* @throws IllegalArgumentException if the codeword has not been added yet
+		**/
+		int load(int codeword, int next){
+			if(codeword==next&&next!=R){
+				buffer[size++] = buffer[0];
+				return codeword;
+			}
+			if(codeword>=next||codeword==R){
+				throw new IllegalArgumentException("Invalid codeword "+codeword+".");
+			}
+			size = length[codeword];
+			for(int k=size-1,c=codeword;k>=0;k--){
+				buffer[k] = last[c];
+				c = prefix[c];
+			}
+			return codeword;
+		}
+		
+		/**
+		* Adds the string of a codeword followed by the first byte of the string in the buffer
+		* @param code the codeword to add
+		* @param val codeword of the string it extends
+		**/
+		void add(int code, int val){
+			prefix[code] = val;
+			last[code] = buffer[0];
+			length[code] = length[val]+1;
+		}
+		
+		/**
+		* Returns the length of the string in the buffer
+		* @return the string length in bytes
+		**/
+		int size(){
+			return size;
+		}
+		
+		/**
+		* Writes the string in the buffer to standard output
+		**/
+		void write(){
+			BinaryStdOut.write(buffer,0,size);
+		}
+	}
+	
+	/**
+	* Standard input read in large chunks and handed out a byte at a time
+	**/
+	private static class ByteInput{
+		private final byte buffer[] = new byte[1<<16]; //chunk of input being read
+		private int next; //index of the next byte to hand out
+		private int end; //index one past the last byte read into the buffer
+		
+		/**
+		* Reads the next byte of input
+		* @return the byte from 0 to 255, or -1 at the end of the input
+		**/
+		int read(){
+			if(next==end){
+				end = BinaryStdIn.read(buffer,0,buffer.length);
+				next = 0;
+				if(end<0){
+					end = 0;
+					return -1;
+				}
+			}
+			return buffer[next++]&0xff;
+		}
+	}
+	
+	/**
+	* Compression codebook holding each string of two or more bytes as its prefix's codeword and its last byte,
+	* in an open addressing hash table of ints so growing a match by one byte is a single probe with no allocation
+	* Single bytes are their own codewords and are never stored
+	**/
+	private static class CodeTable{
+		private static final int BITS = 17; //2^17 slots, so the table is at most half full with every 16 bit codeword
+		private static final int MASK = (1<<BITS)-1; //slot index mask
+		private final int keys[] = new int[1<<BITS]; //prefix codeword shifted over the last byte, -1 for an empty slot
+		private final int codes[] = new int[1<<BITS]; //codeword of the string in each slot
+		
+		/**
+		* Creates an empty codebook
+		**/
+		CodeTable(){
+			clear();
+		}
+		
+		/**
+		* Drops every stored string
+		**/
+		void clear(){
+			Arrays.fill(keys,-1);
+		}
+		
+		/**
+		* Looks up a string one byte longer than a string already in the codebook
+		* @param prefix codeword of the string
+		* @param b the byte following it
+		* @return the codeword of the longer string, or -1 if it is not in the codebook
+		**/
+		int get(int prefix, int b){
+			int key = prefix<<8|b;
+			for(int slot=hash(key);;slot=(slot+1)&MASK){
+				if(keys[slot]==key){
+					return codes[slot];
+				}
+				if(keys[slot]<0){
+					return -1;
+				}
+			}
+		}
+		
+		/**
+		* Adds a string one byte longer than a string already in the codebook
+		* @param prefix codeword of the string
+		* @param b the byte following it
+		* @param code codeword of the longer string
+		**/
+		void put(int prefix, int b, int code){
+			int key = prefix<<8|b;
+			int slot = hash(key);
+			while(keys[slot]>=0){
+				slot = (slot+1)&MASK;
+			}
+			keys[slot] = key;
+			codes[slot] = code;
+		}
+		
+		/**
+		* Spreads a key over the table by Fibonacci hashing
+		* @param key prefix codeword shifted over the last byte
+		* @return the first slot to probe
+		**/
+		private static int hash(int key){
+			return (key*0x9E3779B1)>>>(32-BITS);
+		}
+	}
+}